@@ -0,0 +1,237 @@
+/*
+  Copyright 2010-2026 BusinessCode GmbH, Germany
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.businesscode.bcdui.benchmarks;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.text.StringEscapeUtils;
+import org.h2.jdbcx.JdbcDataSource;
+import org.h2.tools.SimpleResultSet;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import de.businesscode.bcdui.binding.Bindings;
+import de.businesscode.bcdui.toolbox.Configuration;
+import de.businesscode.bcdui.toolbox.config.BareConfiguration;
+import de.businesscode.bcdui.web.wrs.RequestOptions;
+import de.businesscode.util.xml.SecureXmlFactory;
+
+/**
+ * Provides what BCD-UI otherwise gets from the servlet container: the configuration, a default data source and the BindingSets.
+ * The data source is an in-memory H2 database with the table BENCH_ORDERS, known as BindingSet bench_orders.
+ * Also creates synthetic data for that BindingSet, always the same for the same number of rows.
+ */
+public class BenchmarkEnvironment {
+
+  public static final String DB_SOURCE_NAME = "jdbc/bcduiBenchmark";
+  public static final String ORDERS_BINDING_SET = "bench_orders";
+
+  private static final String[] countries = { "DE", "FR", "IT", "ES", "PL", "NL", "BE", "AT", "CH", "SE" };
+  private static final String[] regions = { "North", "South", "East", "West", "Central" };
+
+  private static final DateTimeFormatter wrsTimestampFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+  private static JdbcDataSource dataSource;
+
+  /**
+   * Sets up configuration, database and Bindings once per JVM
+   * @throws Exception
+   */
+  public static synchronized void init() throws Exception {
+    if( dataSource != null )
+      return;
+
+    JdbcDataSource ds = new JdbcDataSource();
+    ds.setURL("jdbc:h2:mem:bcduiBenchmark;DB_CLOSE_DELAY=-1");
+    try( Connection con = ds.getConnection(); Statement stmt = con.createStatement() ) {
+      stmt.execute("CREATE TABLE BENCH_ORDERS (ORDER_ID INTEGER PRIMARY KEY, COUNTRY VARCHAR(2), REGION VARCHAR(20), PRODUCT VARCHAR(40),"
+          + " ORDER_DT DATE, SHIPPED_TS TIMESTAMP, QUANTITY INTEGER, PRICE DECIMAL(12,2), REMARK VARCHAR(200))");
+    }
+
+    // The BindingSets are read from the file system
+    Path configDir = Files.createTempDirectory("bcduiBenchmark");
+    Path bindingsDir = Files.createDirectories(configDir.resolve("bindings"));
+    try( InputStream is = BenchmarkEnvironment.class.getResourceAsStream("bindings/bench_orders.xml") ) {
+      Files.copy(is, bindingsDir.resolve("bench_orders.xml"));
+    }
+    // deleteOnExit() does not remove non-empty directories
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> FileUtils.deleteQuietly(configDir.toFile())));
+
+    BareConfiguration config = BareConfiguration.getInstance();
+    config.addConfigurationParameter(DB_SOURCE_NAME, ds);
+    config.addConfigurationParameter(Configuration.DEFAULT_DB_CONTEXT_ID, DB_SOURCE_NAME);
+    config.addConfigurationParameter(Configuration.CONFIG_FILE_PATH_KEY, configDir.toString());
+    dataSource = ds;
+
+    Bindings.getInstance();
+  }
+
+  /**
+   * @return a connection to the benchmark database, to be closed by the caller
+   * @throws Exception
+   */
+  public static Connection getConnection() throws Exception {
+    return dataSource.getConnection();
+  }
+
+  /**
+   * RequestOptions as used in batch environments, here with the given request document
+   * @param requestDoc
+   * @param maxRows
+   * @return
+   */
+  public static RequestOptions createRequestOptions(Document requestDoc, int maxRows) {
+    RequestOptions options = new RequestOptions(maxRows) {
+      @Override
+      public boolean isDebugMode() {
+        return false;
+      }
+    };
+    options.setRequestDoc(requestDoc);
+    return options;
+  }
+
+  /**
+   * @param xml
+   * @return the namespace aware parsed document
+   * @throws Exception
+   */
+  public static Document parse(String xml) throws Exception {
+    return SecureXmlFactory.newDocumentBuilderFactory().newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+  }
+
+  /**
+   * Replaces the content of BENCH_ORDERS with rowCount synthetic rows
+   * @param rowCount
+   * @throws Exception
+   */
+  public static void fillOrders(int rowCount) throws Exception {
+    try( Connection con = getConnection() ) {
+      try( Statement stmt = con.createStatement() ) {
+        stmt.execute("TRUNCATE TABLE BENCH_ORDERS");
+      }
+      try( PreparedStatement ps = con.prepareStatement("INSERT INTO BENCH_ORDERS VALUES (?,?,?,?,?,?,?,?,?)") ) {
+        for( int r = 0; r < rowCount; r++ ) {
+          Object[] row = createOrderRow(r);
+          for( int c = 0; c < row.length; c++ )
+            ps.setObject(c + 1, row[c]);
+          ps.addBatch();
+          if( r % 1000 == 999 )
+            ps.executeBatch();
+        }
+        ps.executeBatch();
+      }
+    }
+  }
+
+  /**
+   * An in-memory ResultSet with the columns of BENCH_ORDERS in their BindingSet order.
+   * It can be read again after {@link SimpleResultSet#beforeFirst()}
+   * @param rowCount
+   * @return
+   */
+  public static SimpleResultSet createOrdersResultSet(int rowCount) {
+    SimpleResultSet rs = new SimpleResultSet();
+    rs.setAutoClose(false);
+    rs.addColumn("ORDER_ID", Types.INTEGER, 10, 0);
+    rs.addColumn("COUNTRY", Types.VARCHAR, 2, 0);
+    rs.addColumn("REGION", Types.VARCHAR, 20, 0);
+    rs.addColumn("PRODUCT", Types.VARCHAR, 40, 0);
+    rs.addColumn("ORDER_DT", Types.DATE, 10, 0);
+    rs.addColumn("SHIPPED_TS", Types.TIMESTAMP, 26, 6);
+    rs.addColumn("QUANTITY", Types.INTEGER, 10, 0);
+    rs.addColumn("PRICE", Types.DECIMAL, 12, 2);
+    rs.addColumn("REMARK", Types.VARCHAR, 200, 0);
+    for( int r = 0; r < rowCount; r++ )
+      rs.addRow(createOrderRow(r));
+    return rs;
+  }
+
+  /**
+   * A wrs:Wrs inserting rowCount rows into bench_orders, with order ids starting at firstId
+   * @param firstId
+   * @param rowCount
+   * @return
+   */
+  public static String createOrdersInsertWrs(int firstId, int rowCount) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("<Wrs xmlns=\"http://www.businesscode.de/schema/bcdui/wrs-1.0.0\">");
+    sb.append("<Header><BindingSet>").append(ORDERS_BINDING_SET).append("</BindingSet><Columns>");
+    sb.append("<C pos=\"1\" id=\"order_id\" type-name=\"INTEGER\" isKey=\"true\"/>");
+    sb.append("<C pos=\"2\" id=\"country\" type-name=\"VARCHAR\"/>");
+    sb.append("<C pos=\"3\" id=\"region\" type-name=\"VARCHAR\"/>");
+    sb.append("<C pos=\"4\" id=\"product\" type-name=\"VARCHAR\"/>");
+    sb.append("<C pos=\"5\" id=\"order_dt\" type-name=\"DATE\"/>");
+    sb.append("<C pos=\"6\" id=\"shipped_ts\" type-name=\"TIMESTAMP\"/>");
+    sb.append("<C pos=\"7\" id=\"quantity\" type-name=\"INTEGER\"/>");
+    sb.append("<C pos=\"8\" id=\"price\" type-name=\"DECIMAL\"/>");
+    sb.append("<C pos=\"9\" id=\"remark\" type-name=\"VARCHAR\"/>");
+    sb.append("</Columns></Header><Data>");
+    for( int r = 0; r < rowCount; r++ ) {
+      Object[] row = createOrderRow(r);
+      row[0] = firstId + r;
+      sb.append("<I id=\"I").append(r).append("\">");
+      for( Object value: row ) {
+        sb.append("<C>");
+        if( value == null )
+          sb.append("<null/>");
+        else if( value instanceof Timestamp )
+          sb.append(wrsTimestampFormat.format(((Timestamp)value).toLocalDateTime()));
+        else
+          sb.append(StringEscapeUtils.escapeXml10(value.toString()));
+        sb.append("</C>");
+      }
+      sb.append("</I>");
+    }
+    sb.append("</Data></Wrs>");
+    return sb.toString();
+  }
+
+  /**
+   * One row of bench_orders, deterministic for the row number
+   * @param r
+   * @return
+   */
+  private static Object[] createOrderRow(int r) {
+    LocalDate orderDt = LocalDate.of(2024, 1, 1).plusDays(r % 730);
+    return new Object[] {
+        r,
+        countries[r % countries.length],
+        regions[(r / countries.length) % regions.length],
+        "Product " + (r % 997),
+        Date.valueOf(orderDt),
+        Timestamp.valueOf(LocalDateTime.of(orderDt.plusDays(r % 5), LocalTime.of(r % 24, r % 60, (r * 7) % 60))),
+        r % 100,
+        BigDecimal.valueOf((r % 100000) + 99, 2),
+        r % 10 == 0 ? null : "Remark <" + r + "> & more"
+    };
+  }
+}
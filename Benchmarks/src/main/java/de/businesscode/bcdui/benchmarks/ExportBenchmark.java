@@ -0,0 +1,101 @@
+/*
+  Copyright 2010-2026 BusinessCode GmbH, Germany
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.businesscode.bcdui.benchmarks;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.businesscode.bcdui.web.wrs.RequestOptions;
+import de.businesscode.bcdui.wrs.export.CsvDataWriter;
+import de.businesscode.bcdui.wrs.export.SylkDataWriter;
+import de.businesscode.bcdui.wrs.load.DataLoader;
+import de.businesscode.bcdui.wrs.load.IDataWriter;
+import de.businesscode.bcdui.wrs.load.Wrq2Sql;
+
+/**
+ * CSV and SYLK export, including the query against the in-memory database, the output is discarded
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportBenchmark {
+
+  @Param({ "1000", "50000" })
+  public int rowCount;
+
+  private RequestOptions options;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    BenchmarkEnvironment.init();
+    BenchmarkEnvironment.fillOrders(rowCount);
+    options = BenchmarkEnvironment.createRequestOptions(BenchmarkEnvironment.parse(WrsDataWriterBenchmark.selectAllWrq), rowCount);
+  }
+
+  @Benchmark
+  public int csv() throws Exception {
+    CsvDataWriter dataWriter = new CsvDataWriter() {
+      @Override
+      protected Writer getLazyStream() throws Exception {
+        return Writer.nullWriter();
+      }
+    };
+    return load(dataWriter);
+  }
+
+  @Benchmark
+  public int sylk() throws Exception {
+    SylkDataWriter dataWriter = new SylkDataWriter() {
+      @Override
+      protected PrintWriter getLazyStream() throws Exception {
+        return new PrintWriter(Writer.nullWriter());
+      }
+    };
+    return load(dataWriter);
+  }
+
+  private int load(IDataWriter dataWriter) throws Exception {
+    try {
+      new DataLoader(options, new Wrq2Sql(options), dataWriter).run();
+    } finally {
+      dataWriter.close();
+    }
+    return dataWriter.getRowCount();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    options.closeAllThreadManagedConnections();
+  }
+}
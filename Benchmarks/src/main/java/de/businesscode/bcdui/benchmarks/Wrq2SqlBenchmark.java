@@ -0,0 +1,102 @@
+/*
+  Copyright 2010-2026 BusinessCode GmbH, Germany
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.businesscode.bcdui.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.businesscode.bcdui.toolbox.Configuration;
+import de.businesscode.bcdui.toolbox.config.BareConfiguration;
+import de.businesscode.bcdui.web.wrs.RequestOptions;
+import de.businesscode.bcdui.wrs.load.SQLStatementWithParams;
+import de.businesscode.bcdui.wrs.load.Wrq2Sql;
+import de.businesscode.bcdui.wrs.load.WrqPlanCache;
+
+/**
+ * SQL generation from a wrq:WrsRequest.
+ * With planCache=miss, the Wrqs differ in their row limit, which is part of the cache key, and there are more of them than the cache holds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Wrq2SqlBenchmark {
+
+  private static final String wrqHead =
+      "<wrq:WrsRequest xmlns:wrq='http://www.businesscode.de/schema/bcdui/wrs-request-1.0.0' xmlns:f='http://www.businesscode.de/schema/bcdui/filter-1.0.0'>"
+    + "<wrq:Select rowEnd='%d'>"
+    + "<wrq:Columns><wrq:C bRef='country'/><wrq:C bRef='region'/><wrq:C bRef='quantity' aggr='sum'/><wrq:C bRef='price' aggr='max'/></wrq:Columns>"
+    + "<wrq:From><wrq:BindingSet>"+BenchmarkEnvironment.ORDERS_BINDING_SET+"</wrq:BindingSet></wrq:From>"
+    + "<f:Filter>"
+    + "<f:Expression bRef='country' op='in' value='DE,FR,IT,ES'/>"
+    + "<f:Or><f:Expression bRef='order_dt' op='&gt;=' value='2024-03-01'/><f:Expression bRef='product' op='like' value='Product 1*'/></f:Or>"
+    + "</f:Filter>";
+  private static final String wrqTail =
+      "<wrq:Ordering><wrq:C bRef='country'/><wrq:C bRef='quantity' order='desc'/></wrq:Ordering>"
+    + "</wrq:Select></wrq:WrsRequest>";
+
+  /** Plain GROUP BY or GROUPING SETS */
+  @Param({ "groupBy", "groupingSets" })
+  public String grouping;
+
+  /** Cache hit, cache miss or caching disabled */
+  @Param({ "hit", "miss", "off" })
+  public String planCache;
+
+  private RequestOptions[] options;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    BenchmarkEnvironment.init();
+    BareConfiguration.getInstance().addConfigurationParameter(Configuration.DISABLE_CACHE, "off".equals(planCache));
+    WrqPlanCache.getInstance().clear();
+    int distinctWrqs = "miss".equals(planCache) ? 2 * BareConfiguration.getInstance().getConfigurationParameter(WrqPlanCache.PARAM_MAX_ENTRIES, WrqPlanCache.DEFAULT_MAX_ENTRIES) : 1;
+
+    String groupingXml = "groupBy".equals(grouping)
+        ? "<wrq:Grouping><wrq:C bRef='country'/><wrq:C bRef='region'/></wrq:Grouping>"
+        : "<wrq:Grouping><wrq:GroupingSets><wrq:Set><wrq:C bRef='country'/><wrq:C bRef='region'/></wrq:Set><wrq:Set><wrq:C bRef='country'/></wrq:Set><wrq:Set/></wrq:GroupingSets></wrq:Grouping>";
+    options = new RequestOptions[distinctWrqs];
+    for( int i = 0; i < distinctWrqs; i++ )
+      options[i] = BenchmarkEnvironment.createRequestOptions(BenchmarkEnvironment.parse(String.format(wrqHead, 1000 + i) + groupingXml + wrqTail), 10000);
+  }
+
+  @Benchmark
+  public SQLStatementWithParams wrq2Sql() throws Exception {
+    next = (next + 1) % options.length;
+    return new Wrq2Sql(options[next]).getSelectStatement();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    BareConfiguration.getInstance().addConfigurationParameter(Configuration.DISABLE_CACHE, false);
+  }
+}
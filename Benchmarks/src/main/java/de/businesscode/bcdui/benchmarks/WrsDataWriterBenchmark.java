@@ -0,0 +1,93 @@
+/*
+  Copyright 2010-2026 BusinessCode GmbH, Germany
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.businesscode.bcdui.benchmarks;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLOutputFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.h2.tools.SimpleResultSet;
+
+import de.businesscode.bcdui.web.wrs.RequestOptions;
+import de.businesscode.bcdui.wrs.load.Wrq2Sql;
+import de.businesscode.bcdui.wrs.load.WrsDataWriter;
+
+/**
+ * Serialization of a ResultSet into Wrs format by WrsDataWriter, excluding any database access.
+ * The ResultSet is an in-memory one, the output is discarded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WrsDataWriterBenchmark {
+
+  static final String selectAllWrq =
+      "<wrq:WrsRequest xmlns:wrq='http://www.businesscode.de/schema/bcdui/wrs-request-1.0.0'>"
+    + "<wrq:Select><wrq:Columns>"
+    + "<wrq:C bRef='order_id'/><wrq:C bRef='country'/><wrq:C bRef='region'/><wrq:C bRef='product'/><wrq:C bRef='order_dt'/>"
+    + "<wrq:C bRef='shipped_ts'/><wrq:C bRef='quantity'/><wrq:C bRef='price'/><wrq:C bRef='remark'/>"
+    + "</wrq:Columns>"
+    + "<wrq:From><wrq:BindingSet>"+BenchmarkEnvironment.ORDERS_BINDING_SET+"</wrq:BindingSet></wrq:From>"
+    + "</wrq:Select></wrq:WrsRequest>";
+
+  @Param({ "1000", "50000" })
+  public int rowCount;
+
+  private RequestOptions options;
+  private Wrq2Sql generator;
+  private SimpleResultSet resultSet;
+  private final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    BenchmarkEnvironment.init();
+    options = BenchmarkEnvironment.createRequestOptions(BenchmarkEnvironment.parse(selectAllWrq), rowCount);
+    generator = new Wrq2Sql(options);
+    generator.getSelectStatement(); // DataLoader does this before writing, it determines the selected binding items
+    resultSet = BenchmarkEnvironment.createOrdersResultSet(rowCount);
+  }
+
+  @Benchmark
+  public int writeWrs() throws Exception {
+    resultSet.beforeFirst();
+    WrsDataWriter dataWriter = new WrsDataWriter(xmlOutputFactory.createXMLStreamWriter(Writer.nullWriter()));
+    dataWriter.write(options, generator, resultSet, 0);
+    dataWriter.close();
+    return dataWriter.getRowCount();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    resultSet.close();
+  }
+}
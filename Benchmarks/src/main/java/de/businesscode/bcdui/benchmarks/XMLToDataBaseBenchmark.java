@@ -0,0 +1,103 @@
+/*
+  Copyright 2010-2026 BusinessCode GmbH, Germany
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.businesscode.bcdui.benchmarks;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.businesscode.bcdui.toolbox.Configuration;
+import de.businesscode.bcdui.web.wrs.RequestOptions;
+import de.businesscode.bcdui.wrs.save.DataSaver;
+import de.businesscode.util.xml.SecureXmlFactory;
+
+/**
+ * Saving a Wrs with wrs:I rows, i.e. parsing in XMLToDataBase and batching in DatabaseWriter, against the in-memory database.
+ * Each invocation inserts new rows via DataSaver and commits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XMLToDataBaseBenchmark {
+
+  private static final Logger log = LogManager.getLogger(XMLToDataBaseBenchmark.class);
+
+  @Param({ "100", "5000" })
+  public int rowCount;
+
+  @Param({ "1000" })
+  public int maxBatchSize;
+
+  private RequestOptions options;
+  private XMLInputFactory xmlInputFactory;
+  private int nextId;
+  private String wrs;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    BenchmarkEnvironment.init();
+    options = BenchmarkEnvironment.createRequestOptions(null, -1);
+    options.setMaxSQLBatchSize(maxBatchSize);
+    xmlInputFactory = SecureXmlFactory.newXMLInputFactory();
+  }
+
+  @Setup(Level.Iteration)
+  public void emptyTable() throws Exception {
+    BenchmarkEnvironment.fillOrders(0);
+    nextId = 0;
+  }
+
+  @Setup(Level.Invocation)
+  public void createWrs() {
+    wrs = BenchmarkEnvironment.createOrdersInsertWrs(nextId, rowCount);
+    nextId += rowCount;
+  }
+
+  @Benchmark
+  public void save() throws Exception {
+    XMLEventReader reader = xmlInputFactory.createXMLEventReader(new StringReader(wrs));
+    DataSaver dataSaver = new DataSaver();
+    dataSaver.init(options, reader, log);
+    try {
+      dataSaver.run();
+    } catch (Exception e) {
+      Configuration.getInstance().closeAllConnections(true);
+      throw e;
+    }
+    options.closeAllThreadManagedConnections();
+  }
+}
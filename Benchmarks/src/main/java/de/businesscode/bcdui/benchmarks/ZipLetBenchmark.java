@@ -0,0 +1,75 @@
+/*
+  Copyright 2010-2026 BusinessCode GmbH, Germany
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.businesscode.bcdui.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+import de.businesscode.bcdui.web.servlets.ZipLet;
+
+/**
+ * Compression and decompression of guiStatus documents as done for URLs
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ZipLetBenchmark {
+
+  /** Number of filter expressions in the guiStatus */
+  @Param({ "5", "200" })
+  public int filterCount;
+
+  private String guiStatus;
+  private String compressed;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    sb.append("<guiStatus:Status xmlns:guiStatus='http://www.businesscode.de/schema/bcdui/guiStatus-1.0.0' xmlns:f='http://www.businesscode.de/schema/bcdui/filter-1.0.0'>");
+    sb.append("<f:Filter>");
+    for( int i = 0; i < filterCount; i++ )
+      sb.append("<f:Expression bRef='dim").append(i % 17).append("' op='=' value='value ").append(i).append("'/>");
+    sb.append("</f:Filter></guiStatus:Status>");
+    guiStatus = sb.toString();
+    compressed = ZipLet.compress(guiStatus);
+  }
+
+  @Benchmark
+  public String compress() throws Exception {
+    return ZipLet.compress(guiStatus);
+  }
+
+  @Benchmark
+  public Document decompress() throws Exception {
+    return ZipLet.decodeAndDecompressToXML(compressed, null);
+  }
+}
@@ -21,9 +21,11 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -72,9 +74,10 @@ public class Bindings {
   private static final String defaultBindingsPath = "bindings";
   private static final String bcdDefaultBindings = "bcdDefaults";
 
-  protected static Bindings bindings = null;
+  // Published snapshot, readers access it without locking. Only creation and reload synchronize on Bindings.class
+  protected static volatile Bindings bindings = null;
   protected Map<String, Collection<StandardBindingSet>> warBindingMap;
-  protected static Map<String, Map<String, String>> bindingsDefaultMap;
+  protected static volatile Map<String, Map<String, String>> bindingsDefaultMap = new ConcurrentHashMap<String, Map<String, String>>();
 
   private final Logger log = LogManager.getLogger(getClass());
 
@@ -112,8 +115,10 @@ public class Bindings {
    * Bindings
    */
   protected Bindings() throws BindingException {
-    bindingsDefaultMap = new ConcurrentHashMap<String, Map<String, String>>();
-    readBindingDefaults(BareConfiguration.getInstance().getConfigurationParameter(Configuration.CONFIG_FILE_PATH_KEY)+File.separator+defaultBindingsPath + File.separator + bcdDefaultBindings, bindingsDefaultMap);
+    // Fill a fresh map and swap it in afterwards, so that a running instance keeps seeing complete defaults during a reload
+    Map<String, Map<String, String>> newBindingsDefaultMap = new ConcurrentHashMap<String, Map<String, String>>();
+    readBindingDefaults(BareConfiguration.getInstance().getConfigurationParameter(Configuration.CONFIG_FILE_PATH_KEY)+File.separator+defaultBindingsPath + File.separator + bcdDefaultBindings, newBindingsDefaultMap);
+    bindingsDefaultMap = newBindingsDefaultMap;
     warBindingMap = new ConcurrentHashMap<String, Collection<StandardBindingSet>>();
     initWarMap();
   }
@@ -132,19 +137,51 @@ public class Bindings {
    *
    * Method getInstance
    *
+   * Once created, the instance is read without any locking, only the very first call (or the first one after {@link #clear()}) synchronizes
+   *
    * @return
    * @throws BindingException
    */
-  public static synchronized Bindings getInstance() throws BindingException
+  public static Bindings getInstance() throws BindingException
   {
-    if( Bindings.bindings==null ) {
-      try {
-        Bindings.bindings = (Bindings) Configuration.getClassoption(OPT_CLASSES.BINDINGS).getDeclaredConstructor().newInstance();
-      } catch (Exception e) {
-        throw new BindingException("No valid Bindings class found", e);
-      }
+    Bindings current = Bindings.bindings;
+    if( current != null )
+      return current;
+    synchronized (Bindings.class) {
+      if( Bindings.bindings==null )
+        Bindings.bindings = createInstance();
+      return Bindings.bindings;
+    }
+  }
+
+  /**
+   * Reads all BindingSets fresh into a new instance and publishes it in one step when complete.
+   * Unlike {@link #clear()} followed by {@link #getInstance()}, concurrent readers keep using the previous instance during reading
+   * and never see an empty or partially read state.
+   *
+   * @return the new instance
+   * @throws BindingException
+   */
+  public static Bindings reload() throws BindingException
+  {
+    synchronized (Bindings.class) {
+      Bindings.bindings = createInstance();
+      return Bindings.bindings;
+    }
+  }
+
+  /**
+   * Instantiates the configured Bindings class
+   * @return
+   * @throws BindingException
+   */
+  private static Bindings createInstance() throws BindingException
+  {
+    try {
+      return (Bindings) Configuration.getClassoption(OPT_CLASSES.BINDINGS).getDeclaredConstructor().newInstance();
+    } catch (Exception e) {
+      throw new BindingException("No valid Bindings class found", e);
     }
-    return bindings;
   }
 
 
@@ -271,10 +308,21 @@ public class Bindings {
     return get(bindingSetId);
   }
 
+  /**
+   * @return the distinct jdbcResourceNames of all BindingSets, null standing for the default data source
+   */
+  public Set<String> getJdbcResourceNames() {
+    Set<String> result = new HashSet<String>();
+    for( Collection<StandardBindingSet> bsList : warBindingMap.values() )
+      for( StandardBindingSet bs : bsList )
+        result.add(bs.getJdbcResourceName());
+    return result;
+  }
+
   /**
    * clears the bindings so that getInstance() would return a new instance, reading BindingSets fresh
    */
-  public static synchronized void clear(){
+  public static void clear(){
     Bindings.bindings = null;
   }
 
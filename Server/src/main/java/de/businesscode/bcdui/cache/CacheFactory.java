@@ -18,6 +18,7 @@ package de.businesscode.bcdui.cache;
 import org.apache.commons.vfs2.FileSystemException;
 
 import de.businesscode.bcdui.binding.exc.BindingException;
+import de.businesscode.bcdui.vfs.provider.database.VFSContentCache;
 import de.businesscode.bcdui.vfs.provider.database.VFSManagerFactory;
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
@@ -54,13 +55,15 @@ public class CacheFactory {
   }
 
   /**
-   * removes all entries from VFS cache
+   * removes all entries from VFS cache and the {@link VFSContentCache}
    * if it not null is
    * returns true if only VFS cache has been removed elsewhere - false
    */
   public static boolean clearVFScache(){
     boolean rs = false;
 
+    VFSContentCache.getInstance().clear();
+
     if(getVFSCache() != null){
       getVFSCache().removeAll();
       rs = true;
@@ -46,7 +46,7 @@ abstract class ASqlLogger<T> extends AWorkerQueue<T> {
   private static enum STATE {
     enabled, bindingSetNotReady, disabled
   }
-  private STATE state = STATE.bindingSetNotReady;
+  private volatile STATE state = STATE.bindingSetNotReady;
 
   private final String bindingSetId;
   private String dataSourceName = DATASOURCE_UNDEF;
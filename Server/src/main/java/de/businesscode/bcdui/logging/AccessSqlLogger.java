@@ -15,18 +15,38 @@
 */
 package de.businesscode.bcdui.logging;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.dbutils.QueryRunner;
+import org.w3c.dom.Document;
+
+import de.businesscode.bcdui.binding.Bindings;
+import de.businesscode.bcdui.binding.exc.BindingException;
 import de.businesscode.bcdui.toolbox.config.BareConfiguration;
 import de.businesscode.sqlengine.SQLEngine;
 import de.businesscode.util.SingletonHolder;
+import de.businesscode.util.Utils;
 
 /**
  * logs {@link AccessSqlLogger.LogRecord} into database, binding set used is bcd_log_access,
  * this class is not intended to be customized or extended in projects. The existence of
  * the binding-set enables this logger automatically.
+ * The request document is serialized when the records are written, not on the request thread.
+ * If the binding-set bcd_log_access_xml exists and bcd_log_access has a requestXmlHash item, the request xml is stored only
+ * once per SHA-256 hash in bcd_log_access_xml and bcd_log_access.requestXmlHash refers to it, leaving bcd_log_access.requestXml empty.
+ * If the request xml could not be stored there, it is written inline to bcd_log_access.requestXml.
  *
  */
 final public class AccessSqlLogger extends ASqlLogger<AccessSqlLogger.LogRecord> {
@@ -47,6 +67,8 @@ final public class AccessSqlLogger extends ASqlLogger<AccessSqlLogger.LogRecord>
     String requestUrl;
     String bindingSetName;
     String requestXml;
+    Document requestDoc;
+    String requestXmlHash;
     long rowCount;
     long valueCount;
     long rsStartTime;
@@ -71,6 +93,25 @@ final public class AccessSqlLogger extends ASqlLogger<AccessSqlLogger.LogRecord>
       this.stamp = new Date();
     }
 
+    /**
+     * @param requestDoc is serialized later on the logger's thread, so it must not be modified after being logged
+     */
+    public LogRecord(String sessionId, String requestUrl, String pageHash, String requestHash, String bindingSetName, Document requestDoc, long rowCount, long valueCount, long rsStartTime, long rsEndTime, long writeDuration, long executeDuration) {
+      this(sessionId, requestUrl, pageHash, requestHash, bindingSetName, (String)null, rowCount, valueCount, rsStartTime, rsEndTime, writeDuration, executeDuration);
+      this.requestDoc = requestDoc;
+    }
+
+    /**
+     * @return the request xml, serializing the request document on first call
+     */
+    String getRequestXml() throws Exception {
+      if (requestXml == null && requestDoc != null) {
+        requestXml = Utils.serializeElement(requestDoc);
+        requestDoc = null;
+      }
+      return requestXml;
+    }
+
     @Override
     public String toString() {
       return String.format("[SESSION:'%s', URL:'%s']", sessionId, requestUrl);
@@ -93,12 +134,47 @@ final public class AccessSqlLogger extends ASqlLogger<AccessSqlLogger.LogRecord>
           ",  $b.rsEndTime_" +
           ",  $b.writeDuration_" +
           ",  $b.executeDuration_" +
-          ") VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?)";
+          "#if($withHash),  $b.requestXmlHash_#end" +
+          ") VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?#if($withHash),?#end)";
+
+  private static final String BINDING_SET_XML = "bcd_log_access_xml";
+  private static final String PARAM_KNOWN_XML_HASHES = "bcdui/loggers/db/access/knownXmlHashes";
+  private static final int DEFAULT_KNOWN_XML_HASHES = 10000;
+
+  private final static String TPL_SELECT_XML_STMT =
+      "#set($b = $bindings." + BINDING_SET_XML + ")" +
+          " SELECT $b.requestXmlHash_ FROM $b.plainTableName WHERE $b.requestXmlHash_ = ?";
+
+  private final static String TPL_INSERT_XML_STMT =
+      "#set($b = $bindings." + BINDING_SET_XML + ")" +
+          " INSERT INTO $b.plainTableName (" +
+          "   $b.requestXmlHash_" +
+          ",  $b.logTime_" +
+          ",  $b.requestXml_" +
+          ") VALUES (?,?,?)";
+
+  /**
+   * null until determined when processing the first records
+   */
+  private Boolean isXmlByHash = null;
+
+  /**
+   * hashes known to be in bcd_log_access_xml, least recently used ones are forgotten
+   */
+  private final Set<String> knownXmlHashes;
 
   protected AccessSqlLogger() {
     super("bcd_log_access",
         BareConfiguration.getInstance().getConfigurationParameter(PARAM_QUEUE_SIZE, DEFAULT_QUEUE_SIZE),
         BareConfiguration.getInstance().getConfigurationParameter(PARAM_QUEUE_SLEEP_MS, DEFAULT_QUEUE_SLEEP_MS));
+    final int maxKnownXmlHashes = BareConfiguration.getInstance().getConfigurationParameter(PARAM_KNOWN_XML_HASHES, DEFAULT_KNOWN_XML_HASHES);
+    knownXmlHashes = Collections.newSetFromMap(new LinkedHashMap<String, Boolean>(256, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+        return size() > maxKnownXmlHashes;
+      }
+    });
   }
 
   private static SingletonHolder<AccessSqlLogger> holder = new SingletonHolder<AccessSqlLogger>() {
@@ -114,7 +190,90 @@ final public class AccessSqlLogger extends ASqlLogger<AccessSqlLogger.LogRecord>
 
   @Override
   protected String getSqlTemplate() {
-    return new SQLEngine().transform(TPL_INSERT_STMT);
+    return new SQLEngine().transform(TPL_INSERT_STMT, Collections.<String, Object>singletonMap("withHash", isXmlByHash()));
+  }
+
+  /**
+   * @return true if request xml is to be stored by hash in bcd_log_access_xml
+   */
+  private boolean isXmlByHash() {
+    if (isXmlByHash == null) {
+      try {
+        isXmlByHash = Bindings.getInstance().hasBindingSet(BINDING_SET_XML) && Bindings.getInstance().get("bcd_log_access", Collections.emptyList()).hasItem("requestXmlHash");
+      } catch (BindingException e) {
+        isXmlByHash = false;
+      }
+    }
+    return isXmlByHash;
+  }
+
+  @Override
+  protected void processObjects(Collection<LogRecord> records) {
+    if (isXmlByHash())
+      storeRequestXmls(records);
+    super.processObjects(records);
+  }
+
+  /**
+   * Writes request xml with a hash not yet known to bcd_log_access_xml and sets the requestXmlHash of the records
+   * whose request xml is stored there. The others keep their request xml inline in bcd_log_access.
+   */
+  private synchronized void storeRequestXmls(Collection<LogRecord> records) {
+    Map<String, String> unknown = new LinkedHashMap<>();
+    Map<LogRecord, String> pending = new IdentityHashMap<>();
+    for (LogRecord record : records) {
+      String xml;
+      try {
+        xml = record.getRequestXml();
+      } catch (Exception e) {
+        log.warn("failed to serialize request xml", e);
+        continue;
+      }
+      if (xml == null)
+        continue;
+      String hash = DigestUtils.sha256Hex(xml);
+      if (knownXmlHashes.contains(hash))
+        record.requestXmlHash = hash;
+      else {
+        unknown.putIfAbsent(hash, xml);
+        pending.put(record, hash);
+      }
+    }
+    if (unknown.isEmpty())
+      return;
+
+    Set<String> stored = new HashSet<>();
+    SQLEngine sqlEngine = new SQLEngine();
+    String selectSql = sqlEngine.transform(TPL_SELECT_XML_STMT);
+    String insertSql = sqlEngine.transform(TPL_INSERT_XML_STMT);
+    QueryRunner runner = new QueryRunner();
+    try (Connection con = BareConfiguration.getInstance().getRawDataSource(Bindings.getInstance().get(BINDING_SET_XML, Collections.emptyList()).getJdbcResourceName()).getConnection()) {
+      con.setAutoCommit(true);
+      for (Map.Entry<String, String> e : unknown.entrySet()) {
+        try {
+          if (!runner.query(con, selectSql, ResultSet::next, e.getKey())) {
+            try {
+              runner.update(con, insertSql, e.getKey(), new Timestamp(System.currentTimeMillis()), e.getValue());
+            } catch (SQLException ex) {
+              // Another node may have inserted it meanwhile
+              if (!runner.query(con, selectSql, ResultSet::next, e.getKey()))
+                throw ex;
+            }
+          }
+          stored.add(e.getKey());
+          knownXmlHashes.add(e.getKey());
+        } catch (SQLException ex) {
+          log.warn("failed pushing request xml " + e.getKey() + " to database", ex);
+        }
+      }
+    } catch (Exception e) {
+      log.warn("failed pushing request xml to database", e);
+    }
+
+    for (Map.Entry<LogRecord, String> e : pending.entrySet()) {
+      if (stored.contains(e.getValue()))
+        e.getKey().requestXmlHash = e.getValue();
+    }
   }
 
   /**
@@ -125,17 +284,26 @@ final public class AccessSqlLogger extends ASqlLogger<AccessSqlLogger.LogRecord>
   @Override
   protected Object[][] convertData(Collection<LogRecord> records) {
     Object[][] data = new Object[records.size()][];
+    boolean withHash = isXmlByHash();
 
     int cnt=0;
     for(LogRecord record: records){
-      data[cnt++] = new Object[]{
+      String requestXml = null;
+      if(!withHash || record.requestXmlHash == null){
+        try {
+          requestXml = record.getRequestXml();
+        } catch (Exception e) {
+          log.warn("failed to serialize request xml", e);
+        }
+      }
+      Object[] row = new Object[]{
         new Timestamp(record.stamp.getTime()),
         record.sessionId,
         record.pageHash,
         record.requestHash,
         record.requestUrl,
         record.bindingSetName,
-        record.requestXml,
+        requestXml,
         record.rowCount,
         record.valueCount,
         record.rsStartTime,
@@ -143,8 +311,16 @@ final public class AccessSqlLogger extends ASqlLogger<AccessSqlLogger.LogRecord>
         record.writeDuration,
         record.executeDuration
       };
+      data[cnt++] = withHash ? appendHash(row, record.requestXmlHash) : row;
     }
 
     return data;
   }
+
+  private static Object[] appendHash(Object[] row, String requestXmlHash) {
+    Object[] withHash = new Object[row.length + 1];
+    System.arraycopy(row, 0, withHash, 0, row.length);
+    withHash[row.length] = requestXmlHash;
+    return withHash;
+  }
 }
@@ -18,6 +18,7 @@ package de.businesscode.bcdui.logging;
 import java.sql.Timestamp;
 import java.util.Collection;
 import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
 
 import de.businesscode.bcdui.toolbox.Configuration;
 import de.businesscode.bcdui.toolbox.config.BareConfiguration;
@@ -41,6 +42,9 @@ import de.businesscode.util.jdbc.wrapper.BcdSqlLogger;
  * also want to take a look at {@link BcdSqlLogger} class enabling programmatic switching of jdbc
  * logging.
  *
+ * To keep SQL logging on in production, bcdui/loggers/db/sql/sampleEvery (default 1) can be set to n to only log a random sample
+ * of 1 in n statements, see {@link #isSampled()}.
+ *
  * Additionally this logger currently also logs HTTP layer information, if available, provided
  * by {@link RequestLifeCycleFilter}, therefore the dependency on that class.
  *
@@ -50,17 +54,36 @@ final public class SqlToDatabaseLogger extends ASqlLogger<SqlToDatabaseLogger.Lo
   private static final long DEFAULT_QUEUE_SLEEP_MS =  10000;  //10seconds
   private static final String PARAM_QUEUE_SIZE =      "bcdui/loggers/db/sql/queueSize";
   private static final String PARAM_QUEUE_SLEEP_MS =  "bcdui/loggers/db/sql/queueSleepMs";
+  private static final int DEFAULT_SAMPLE_EVERY =     1;
+  private static final String PARAM_SAMPLE_EVERY =    "bcdui/loggers/db/sql/sampleEvery";
 
   private static final ThreadLocal<Boolean> isDisabled = new ThreadLocal<Boolean>();
 
+  /**
+   * on average every sampleEvery-th statement is logged, 1 logs all
+   */
+  private final int sampleEvery;
+
+  /**
+   * checked for every JDBC statement, therefore lock-free: the switch is per thread and the state of the binding-set check is volatile
+   */
   @Override
-  public synchronized boolean isEnabled() {
-    Boolean ref = isDisabled.get();
-    if(ref != null && ref){
+  public boolean isEnabled() {
+    if(isDisabled.get() == Boolean.TRUE){
       return false;
     } else return super.isEnabled();
   }
 
+  /**
+   * to be checked in addition to {@link #isEnabled()} before creating and publishing a record,
+   * with bcdui/loggers/db/sql/sampleEvery set to n, a random sample of 1 in n statements is logged
+   *
+   * @return true if the current statement is to be logged
+   */
+  public boolean isSampled() {
+    return sampleEvery <= 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0;
+  }
+
   /**
    * enables/disables JDBC logging for this thread, this method has to be called prior creating a JDBC statement
    * (or connection, datasource), if you dont obtain DataSource or Connection object from {@link Configuration}
@@ -81,7 +104,7 @@ final public class SqlToDatabaseLogger extends ASqlLogger<SqlToDatabaseLogger.Lo
    *
    * @param isEnabled
    */
-  public synchronized void setEnabled(boolean isEnabled) {
+  public void setEnabled(boolean isEnabled) {
     if (isEnabled) {
       isDisabled.remove();
     } else {
@@ -167,6 +190,7 @@ final public class SqlToDatabaseLogger extends ASqlLogger<SqlToDatabaseLogger.Lo
     super("bcd_log_sql",
         BareConfiguration.getInstance().getConfigurationParameter(PARAM_QUEUE_SIZE, DEFAULT_QUEUE_SIZE),
         BareConfiguration.getInstance().getConfigurationParameter(PARAM_QUEUE_SLEEP_MS, DEFAULT_QUEUE_SLEEP_MS));
+    sampleEvery = BareConfiguration.getInstance().getConfigurationParameter(PARAM_SAMPLE_EVERY, DEFAULT_SAMPLE_EVERY);
   }
 
   private static SingletonHolder<SqlToDatabaseLogger> holder = new SingletonHolder<SqlToDatabaseLogger>() {
@@ -15,11 +15,18 @@
 */
 package de.businesscode.bcdui.subjectsettings;
 
+import java.io.Serializable;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import jakarta.servlet.FilterChain;
@@ -281,27 +288,20 @@ public class SecurityHelper {
    * @param permissionType
    *          to retrieve permissions for or NULL in order to retrieve full permission set, in such a case
    *          the permissions are returned as they are (with full permission domain)
-   * @return empty/non-empty set of permissions
+   * @return empty/non-empty set of permissions, unmodifiable if served from the subject's {@link PermissionIndex}
    *
    * @throws SecurityException
    *           in case the subject is not authenticated
    */
   public static Set<String> getPermissions(Subject subject, String permissionType) {
+    PermissionIndex index = getPermissionIndex(subject);
+    if (index != null) {
+      return index.get(permissionType);
+    }
     return extractFromAuthorizationInfo(subject, (ai, set) -> {
-      // combine string and object permissions
-      // geo:country:de, geo:country:*, foo:bar
-      Collection<String> stringPerms = ai.getStringPermissions();
-      {
-        final Collection<Permission> objPerms = ai.getObjectPermissions();
-        if(objPerms != null) { // combine to stringPerms
-          if(stringPerms == null) {
-            stringPerms = new LinkedList<>();
-          }
-          stringPerms.addAll(objPerms.stream().map(p->p.toString()).collect(Collectors.toCollection(LinkedList::new)));
-        }
-      }
+      Collection<String> stringPerms = getAllPermissions(ai);
       // empty perms-set
-      if(stringPerms == null || stringPerms.isEmpty()){
+      if(stringPerms.isEmpty()){
         return;
       }
       if(permissionType == null) {
@@ -334,6 +334,65 @@ public class SecurityHelper {
     });
   }
 
+  /**
+   * combine string and object permissions of an AuthorizationInfo
+   * geo:country:de, geo:country:*, foo:bar
+   */
+  private static Collection<String> getAllPermissions(AuthorizationInfo ai) {
+    Collection<String> stringPerms = new LinkedList<>();
+    if(ai.getStringPermissions() != null) {
+      stringPerms.addAll(ai.getStringPermissions());
+    }
+    final Collection<Permission> objPerms = ai.getObjectPermissions();
+    if(objPerms != null) {
+      stringPerms.addAll(objPerms.stream().map(p->p.toString()).collect(Collectors.toList()));
+    }
+    return stringPerms;
+  }
+
+  /**
+   * The subject's PermissionIndex, built once per set of AuthorizationInfo instances
+   * @return null if the realms do not cache their AuthorizationInfo or there is no session, in which case we look up the permissions directly
+   */
+  private static PermissionIndex getPermissionIndex(Subject subject) {
+    if (!subject.isAuthenticated()) {
+      throw new SecurityException("subject is not authenticated");
+    }
+    return getAuthorizationScoped(subject, PermissionIndex.class, PermissionIndex::new);
+  }
+
+  /**
+   * All permissions of a subject by permission type. A permission a:b:c is found for type a with value b:c and for type a:b with value c,
+   * which is the same as filtering by startsWith(permissionType + ":").
+   */
+  private static final class PermissionIndex {
+    private final Set<String> allPermissions;
+    private final Map<String, Set<String>> permissionsByType;
+
+    private PermissionIndex(List<AuthorizationInfo> authorizationInfos) {
+      Set<String> all = new HashSet<>();
+      Map<String, Set<String>> byType = new HashMap<>();
+      for (AuthorizationInfo ai : authorizationInfos) {
+        for (String perm : getAllPermissions(ai)) {
+          all.add(perm);
+          for (int i = perm.indexOf(':'); i >= 0; i = perm.indexOf(':', i + 1)) {
+            byType.computeIfAbsent(perm.substring(0, i), k -> new HashSet<>()).add(perm.substring(i + 1));
+          }
+        }
+      }
+      byType.replaceAll((k, v) -> Collections.unmodifiableSet(v));
+      allPermissions = Collections.unmodifiableSet(all);
+      permissionsByType = byType;
+    }
+
+    private Set<String> get(String permissionType) {
+      if (permissionType == null) {
+        return allPermissions;
+      }
+      return permissionsByType.getOrDefault(permissionType, Collections.emptySet());
+    }
+  }
+
   @FunctionalInterface
   private static interface InfoCollector {
     /**
@@ -354,13 +413,29 @@ public class SecurityHelper {
    * @return
    */
   private static Set<String> extractFromAuthorizationInfo(Subject subject, InfoCollector collector) {
+    Set<String> valueSet = new HashSet<>();
+    getAuthorizationInfos(subject).forEach(ai -> collector.collect(ai, valueSet));
+    return valueSet;
+  }
+
+  /**
+   * retrieve the {@link AuthorizationInfo} of all AuthorizingRealms for the subject, realms returning none are skipped
+   *
+   * @param subject
+   *          the subject must be authenticated
+   * @return list of AuthorizationInfo in the order of the realms
+   *
+   * @throws SecurityException
+   *           in case the subject is not authenticated
+   */
+  public static List<AuthorizationInfo> getAuthorizationInfos(Subject subject) {
     if (!subject.isAuthenticated()) {
       throw new SecurityException("subject is not authenticated");
     }
     final PrincipalCollection principals = subject.getPrincipals();
     DefaultSecurityManager dsm = (DefaultSecurityManager) SecurityUtils.getSecurityManager();
 
-    Set<String> valueSet = new HashSet<>();
+    List<AuthorizationInfo> infos = new ArrayList<>();
 
     try {
       dsm.getRealms().stream().filter(r -> r instanceof AuthorizingRealm).forEach(r -> {
@@ -370,7 +445,7 @@ public class SecurityHelper {
           return;
         }
         if (queryResult instanceof AuthorizationInfo) {
-          collector.collect( (AuthorizationInfo) queryResult, valueSet);
+          infos.add((AuthorizationInfo) queryResult);
         } else {
           throw new RuntimeException("query-result is not of compatible type: " + queryResult.getClass().getName());
         }
@@ -378,7 +453,82 @@ public class SecurityHelper {
     } catch (Exception e) {
       throw new RuntimeException("failed to retrieve permissions", e);
     }
-    return valueSet;
+    return infos;
+  }
+
+  /**
+   * tells whether all AuthorizingRealms cache their AuthorizationInfo. In this case {@link #getAuthorizationInfos(Subject)} returns
+   * the same instances until the cache is cleared, for example by SubjectPreferencesRealm.refreshPermissions(), so that their
+   * identity tells whether the permissions of a subject may have changed
+   *
+   * @return true if all AuthorizingRealms cache
+   */
+  public static boolean isAuthorizationCached() {
+    DefaultSecurityManager dsm = (DefaultSecurityManager) SecurityUtils.getSecurityManager();
+    return dsm.getRealms().stream().filter(r -> r instanceof AuthorizingRealm).map(r -> (AuthorizingRealm) r)
+        .allMatch(r -> r.isAuthorizationCachingEnabled() && (r.getAuthorizationCache() != null || r.getCacheManager() != null));
+  }
+
+  /**
+   * retrieve a value derived from the subject's permissions, which is kept in the session as long as the realms return the same
+   * {@link AuthorizationInfo} instances. Realms are expected to return a new AuthorizationInfo when permissions change instead of modifying it,
+   * as JdbcRealm and SubjectPreferencesRealm do, so that a different instance, for example after SubjectPreferences changed the permissions,
+   * makes us create a new value. The value is not serialized with the session, it is created again afterwards.
+   *
+   * @param subject
+   * @param type
+   *          of the value, its name is the session attribute
+   * @param factory
+   *          creates the value for the subject's current AuthorizationInfo
+   * @return the value or null if the subject is not authenticated, has no session or the realms do not cache their AuthorizationInfo,
+   *          see {@link #isAuthorizationCached()}
+   */
+  public static <T> T getAuthorizationScoped(Subject subject, Class<T> type, Function<List<AuthorizationInfo>, T> factory) {
+    if (subject == null || !subject.isAuthenticated() || !isAuthorizationCached()) {
+      return null;
+    }
+    Session session = subject.getSession(false);
+    if (session == null) {
+      return null;
+    }
+    List<AuthorizationInfo> infos = getAuthorizationInfos(subject);
+    Object attr = session.getAttribute(type.getName());
+    if (attr instanceof AuthorizationScoped && ((AuthorizationScoped) attr).isFor(infos) && type.isInstance(((AuthorizationScoped) attr).value)) {
+      return type.cast(((AuthorizationScoped) attr).value);
+    }
+    T value = factory.apply(infos);
+    session.setAttribute(type.getName(), new AuthorizationScoped(infos, value));
+    return value;
+  }
+
+  /**
+   * Session attribute holding a value of {@link #getAuthorizationScoped(Subject, Class, Function)} with the AuthorizationInfo instances it was created for
+   */
+  private static final class AuthorizationScoped implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<AuthorizationInfo> authorizationInfos;
+    private final transient Object value;
+
+    private AuthorizationScoped(List<AuthorizationInfo> authorizationInfos, Object value) {
+      this.authorizationInfos = authorizationInfos;
+      this.value = value;
+    }
+
+    /**
+     * @return true if we were created for exactly these AuthorizationInfo instances
+     */
+    private boolean isFor(List<AuthorizationInfo> current) {
+      if (authorizationInfos == null || authorizationInfos.size() != current.size()) {
+        return false;
+      }
+      for (int i = 0; i < current.size(); i++) {
+        if (authorizationInfos.get(i) != current.get(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
   }
 
   /**
@@ -17,15 +17,17 @@ package de.businesscode.bcdui.toolbox;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
@@ -37,8 +39,9 @@ import org.apache.logging.log4j.LogManager;
  * allows asynchronous processing of objects, supports
  * multi-object for batch processing and idle state to release resource if appropriate. The default maximum queue size
  * is {@link #DEFAULT_MAX_QUEUE_SIZE} and if exceeded, new objects are not put into the queue but discarded.
- * This worker has a Timer which is triggers queue-processing every queueDelayMs after a queue has been populated
- * via {@link #process(Object)} or {@link #process(Collection)}, you implement the {@link #processObjects(Collection)}
+ * This worker has a Timer which is triggers queue-processing queueDelayMs after an object was added to the empty queue
+ * via {@link #process(Object)} or {@link #process(Collection)} or as soon as flushSize objects are queued, whichever comes first.
+ * You implement the {@link #processObjects(Collection)}
  * method to process batched objects gathered into the queue during queueDelayMs. In a container environment you can
  * gracefully {@link #shutdownQueues(boolean)} all queues by calling the method i.e. from context listener, in a standalone
  * application you can do it via a shutdown hook or you can {@link #shutdown(boolean)} s single instance.
@@ -54,6 +57,11 @@ import org.apache.logging.log4j.LogManager;
  * executor will shrink the thread pool size down to 0 after {@link #EXECUTOR_KEEPALIVE_MINS}.
  * A {@link #shutdown(boolean)} on single instance will reduce the thread pool size.
  * </p>
+ *
+ * <p>
+ * Adding objects never blocks the calling thread: the queue is lock-free with many producers and the single worker of the instance as consumer,
+ * if it is full, objects are discarded and counted, see {@link #getDiscardedCount()}.
+ * </p>
  */
 abstract public class AWorkerQueue<T> {
   /**
@@ -82,13 +90,26 @@ abstract public class AWorkerQueue<T> {
    */
   private static final AtomicInteger instancesCount = new AtomicInteger(0);
 
-  private Queue<T> queue = new LinkedList<T>();
+  private final ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<T>();
+  /**
+   * number of objects in queue, as ConcurrentLinkedQueue.size() is not constant time
+   */
+  private final AtomicInteger queueSize = new AtomicInteger(0);
   private final int maxQueueSize;
+  private final int flushSize;
+
+  private static final int FLUSH_NONE = 0, FLUSH_DELAYED = 1, FLUSH_IMMEDIATE = 2;
+  /**
+   * whether queue processing is already scheduled, delayed by queueDelayMs or immediately as flushSize was reached
+   */
+  private final AtomicInteger flushState = new AtomicInteger(FLUSH_NONE);
 
+  private final AtomicLong discardedCount = new AtomicLong(0);
+  private final AtomicLong processedCount = new AtomicLong(0);
   /**
-   * the pending queue notification task to notify queue, synchronized by queue
+   * discarded objects not reported to the log yet
    */
-  private Future<?> pendingQueueProcessingFuture = null;
+  private final AtomicLong discardedUnreported = new AtomicLong(0);
 
   /**
    * idle watchdog to a scheduled call {@link #invokeIdle()}
@@ -141,20 +162,40 @@ abstract public class AWorkerQueue<T> {
    *                        into the queue and beginning of processing the queue, if 0 the queue is processed immediately.
    */
   protected AWorkerQueue(int maxQueueSize, long idleThresholdMs, long queueDelayMs){
+    this(maxQueueSize, idleThresholdMs, queueDelayMs, 0);
+  }
+
+  /**
+   * Creates a queue
+   *
+   * @param maxQueueSize    see {@link #AWorkerQueue(int, long, long)}
+   * @param idleThresholdMs see {@link #AWorkerQueue(int, long, long)}
+   * @param queueDelayMs    see {@link #AWorkerQueue(int, long, long)}
+   * @param flushSize       number of queued objects which triggers processing without waiting for queueDelayMs,
+   *                        0 for the default, which is half of the maximum queue size or {@link #DEFAULT_MAX_QUEUE_SIZE} for an unlimited queue
+   */
+  protected AWorkerQueue(int maxQueueSize, long idleThresholdMs, long queueDelayMs, int flushSize){
     if(maxQueueSize == 0) {
       this.maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
     } else {
       this.maxQueueSize = Math.max(-1, maxQueueSize);
     }
+    if(flushSize > 0) {
+      this.flushSize = flushSize;
+    } else {
+      this.flushSize = this.maxQueueSize > 0 ? Math.max(1, this.maxQueueSize / 2) : DEFAULT_MAX_QUEUE_SIZE;
+    }
 
     this.idleThresholdMs = Math.max(0, idleThresholdMs);
     this.queueDelayMs = Math.max(0, queueDelayMs);
 
     if(log.isDebugEnabled()){
-      log.debug(" Worker configured with queue size " + this.maxQueueSize + " and idle treshold(ms) of " + idleThresholdMs + " and queue delay (ms): " + this.queueDelayMs);
+      log.debug(" Worker configured with queue size " + this.maxQueueSize + " and idle treshold(ms) of " + idleThresholdMs + " and queue delay (ms): " + this.queueDelayMs + " and flush size: " + this.flushSize);
     }
 
-    queues.add(this);
+    synchronized(queues){
+      queues.add(this);
+    }
 
     resetPoolSize(instancesCount.incrementAndGet());
   }
@@ -259,12 +300,28 @@ abstract public class AWorkerQueue<T> {
    * @param t
    */
   public void process(final T t){
-    process(new ArrayList<T>(1){
-      private static final long serialVersionUID = 1L;
-      {
-        add(t);
-      }
-    });
+    process(Collections.singletonList(t));
+  }
+
+  /**
+   * @return number of objects discarded so far because the queue was full
+   */
+  public long getDiscardedCount() {
+    return discardedCount.get();
+  }
+
+  /**
+   * @return number of objects handed to {@link #processObjects(Collection)} so far
+   */
+  public long getProcessedCount() {
+    return processedCount.get();
+  }
+
+  /**
+   * @return number of objects currently queued
+   */
+  public int getQueueSize() {
+    return queueSize.get();
   }
 
   private void invokeIdle(){
@@ -285,18 +342,26 @@ abstract public class AWorkerQueue<T> {
       idleFuture = null;
     }
     synchronized(idleLock){
-      // keep processing objects from queue
-      while(queue.size()>0){ // keep this check outside of lock on the queue
-        final Collection<T> objectsToProcess = new LinkedList<T>();
+      // objects added from now on need a new scheduling
+      flushState.set(FLUSH_NONE);
 
-        synchronized(queue){
-          T t;
-          // assemble collection to process, dont process yet
-          // there is no guarantee that poll() returns anything
-          while((t=queue.poll())!=null)objectsToProcess.add(t);
-        } // unlock queue for others
+      long discarded = discardedUnreported.getAndSet(0);
+      if(discarded > 0){
+        log.error("queue is full - discarded " + discarded + " objects, " + discardedCount.get() + " in total");
+      }
+
+      // keep processing objects from queue, in batches of up to the current queue size
+      int batchSize;
+      while((batchSize = queueSize.get()) > 0){
+        final Collection<T> objectsToProcess = new ArrayList<T>(batchSize);
+        T t;
+        while(objectsToProcess.size() < batchSize && (t=queue.poll())!=null){
+          objectsToProcess.add(t);
+        }
+        queueSize.addAndGet(-objectsToProcess.size());
 
         if( objectsToProcess.size() > 0) { // may be empty
+          processedCount.addAndGet(objectsToProcess.size());
           processObjects(objectsToProcess);
         }
       }
@@ -313,20 +378,30 @@ abstract public class AWorkerQueue<T> {
    * @param t object to queue
    */
   final protected void enqueue(Collection<T> t){
-    synchronized(queue){
-      if(this.maxQueueSize > 0 && queue.size() >= this.maxQueueSize){
-        log.error("queue is full - discarding object " + t);
+    int size = 0;
+    for(T o : t){
+      // reserve a slot first, so that the queue never exceeds maxQueueSize
+      size = queueSize.incrementAndGet();
+      if(this.maxQueueSize > 0 && size > this.maxQueueSize){
+        size = queueSize.decrementAndGet();
+        discardedCount.incrementAndGet();
+        discardedUnreported.incrementAndGet();
       } else {
-        if(pendingQueueProcessingFuture != null){
-          // prevent pending execution
-          pendingQueueProcessingFuture.cancel(false);
-        }
-
-        queue.addAll(t);
+        queue.offer(o);
+      }
+    }
 
-        // schedule execution
-        pendingQueueProcessingFuture = executor.schedule(() -> runProcessQueue(), queueDelayMs, TimeUnit.MILLISECONDS);
+    // schedule execution, flushSize reached triggers it immediately, otherwise it happens queueDelayMs after the first object was added
+    try {
+      if(size >= flushSize){
+        if(flushState.getAndSet(FLUSH_IMMEDIATE) != FLUSH_IMMEDIATE){
+          executor.execute(() -> runProcessQueue());
+        }
+      } else if(size > 0 && flushState.compareAndSet(FLUSH_NONE, FLUSH_DELAYED)){
+        executor.schedule(() -> runProcessQueue(), queueDelayMs, TimeUnit.MILLISECONDS);
       }
+    } catch (RejectedExecutionException e) {
+      log.debug("executor is shut down, queued objects are processed on shutdown");
     }
   }
 }
@@ -0,0 +1,160 @@
+/*
+  Copyright 2010-2026 BusinessCode GmbH, Germany
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.businesscode.bcdui.vfs.provider.database;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.businesscode.bcdui.toolbox.config.BareConfiguration;
+
+/**
+ * Holds the content of VFS files, keyed by their decoded path, so that serving them does not need a database round trip.
+ * The cache is bounded by bcdui/vfs/contentCache/maxBytes (default 32MB) of content, least recently used files are dropped first,
+ * files bigger than a quarter of it are not cached. A maxBytes of 0 switches the cache off.
+ * Entries are removed when VFSServlet writes or deletes a path and the cache is cleared together with the VFS catalog by {@link de.businesscode.bcdui.cache.CacheFactory#clearVFScache()}.
+ * Changes made to bcd_virtualFileSystem by other means or on other nodes of a cluster become visible after a refresh of the VFS via CacheManager.
+ */
+public class VFSContentCache {
+
+  public static final String PARAM_MAX_BYTES = "bcdui/vfs/contentCache/maxBytes";
+  public static final int DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+
+  private static final class Holder {
+    static final VFSContentCache instance = new VFSContentCache(BareConfiguration.getInstance().getConfigurationParameter(PARAM_MAX_BYTES, DEFAULT_MAX_BYTES));
+  }
+
+  public static VFSContentCache getInstance() {
+    return Holder.instance;
+  }
+
+  private final Logger log = LogManager.getLogger(getClass());
+  private final long maxBytes;
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+  private long bytes = 0;
+  private long generation = 0;
+
+  protected VFSContentCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * @return false if the cache is switched off
+   */
+  public boolean isEnabled() {
+    return maxBytes > 0;
+  }
+
+  /**
+   * @param path decoded path
+   * @return the cached content or null
+   */
+  public synchronized Entry get(String path) {
+    return entries.get(path);
+  }
+
+  /**
+   * To be read before the content is loaded and passed to {@link #put(String, byte[], long)},
+   * so that content loaded before a concurrent write or refresh does not make it into the cache
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * @param path decoded path
+   * @param data content, which is taken over and must not be modified afterwards
+   * @param generation as read by {@link #getGeneration()} before data was loaded
+   * @return the new entry, which is also returned if it was not cached
+   */
+  public Entry put(String path, byte[] data, long generation) {
+    Entry entry = new Entry(data);
+    if( ! isEnabled() || data.length > maxBytes / 4 )
+      return entry;
+
+    synchronized( this ) {
+      if( generation != this.generation )
+        return entry;
+      Entry old = entries.put(path, entry);
+      if( old != null )
+        bytes -= old.data.length;
+      bytes += data.length;
+      for( Iterator<Entry> it = entries.values().iterator(); bytes > maxBytes && it.hasNext(); ) {
+        bytes -= it.next().data.length;
+        it.remove();
+      }
+    }
+    return entry;
+  }
+
+  /**
+   * Removes the content of the given path, for example because it was written
+   * @param path decoded path
+   */
+  public synchronized void remove(String path) {
+    generation++;
+    Entry old = entries.remove(path);
+    if( old != null )
+      bytes -= old.data.length;
+  }
+
+  /**
+   * Removes all content
+   */
+  public synchronized void clear() {
+    generation++;
+    if( ! entries.isEmpty() )
+      log.trace("clearing " + entries.size() + " VFS files with " + bytes + " bytes");
+    entries.clear();
+    bytes = 0;
+  }
+
+  /**
+   * Content of a VFS file with the time it was read from the database and an ETag derived from the content
+   */
+  public static final class Entry {
+    private final byte[] data;
+    private final long lastModified;
+    private final String eTag;
+
+    private Entry(byte[] data) {
+      this.data = data;
+      this.lastModified = System.currentTimeMillis() / 1000 * 1000; // http dates have seconds precision
+      CRC32 crc = new CRC32();
+      crc.update(data);
+      this.eTag = "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(data.length) + "\"";
+    }
+
+    /**
+     * @return a copy of the content, as callers like StaticResourceServlet modify it
+     */
+    public byte[] getData() {
+      return Arrays.copyOf(data, data.length);
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    public String getETag() {
+      return eTag;
+    }
+  }
+}
@@ -24,6 +24,7 @@ import java.text.MessageFormat;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
 
 import jakarta.servlet.ServletConfig;
 import jakarta.servlet.ServletException;
@@ -42,6 +43,7 @@ import org.apache.logging.log4j.LogManager;
 
 import de.businesscode.bcdui.cache.CacheFactory;
 import de.businesscode.bcdui.toolbox.config.BareConfiguration;
+import de.businesscode.bcdui.vfs.provider.database.VFSContentCache;
 import de.businesscode.sqlengine.SQLEngine;
 import de.businesscode.util.jdbc.Closer;
 import net.sf.ehcache.Cache;
@@ -108,8 +110,13 @@ public class VFSServlet extends HttpServlet {
     FileDAO fileDao;
     try {
       fileDao = createFileDao(req);
-      fileDao.delete(Arrays.asList(urisToDelete.split(" ")));
+      List<String> uris = Arrays.asList(urisToDelete.split(" "));
+      fileDao.delete(uris);
       fileDao.commit();
+
+      for(String path : uris){
+        VFSContentCache.getInstance().remove(path);
+      }
     } catch (Exception e) {
       throw new IOException("an exception stopped us", e);
     }
@@ -171,7 +178,7 @@ public class VFSServlet extends HttpServlet {
   }
 
   /**
-   * updates the dictionary with files written, this one updates VFS cache
+   * updates the dictionary with files written, this one updates VFS cache and drops their content from {@link VFSContentCache}
    *
    * @param writtenFiles
    */
@@ -182,6 +189,7 @@ public class VFSServlet extends HttpServlet {
     Cache cache = CacheFactory.getVFSCache();
     for(String path : writtenFiles){
       cache.put(new Element(path, path));
+      VFSContentCache.getInstance().remove(path);
     }
   }
 
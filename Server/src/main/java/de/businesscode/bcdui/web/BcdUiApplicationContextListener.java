@@ -119,6 +119,8 @@ public class BcdUiApplicationContextListener implements ServletContextListener
       Bindings bindings = Bindings.getInstance();
       bindings.readDependentBindings();
       bindings.readAdditionalBindings();
+      // resolve the database dialects once, so that requests do not need to look at database meta data
+      DatabaseCompatibility.getInstance().resolveDialects(bindings.getJdbcResourceNames());
       resourceBundleControl = I18n.createResourceControl(context.getServletContext());
     } catch (BindingException e) {
       log.error(e.getMessage(), e);
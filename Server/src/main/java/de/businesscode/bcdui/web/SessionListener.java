@@ -24,6 +24,7 @@ import org.apache.logging.log4j.LogManager;
 
 import de.businesscode.bcdui.logging.LogoutSqlLogger;
 import de.businesscode.bcdui.logging.SessionExpiredSqlLogger;
+import de.businesscode.bcdui.web.clientLogging.FrontendLoggingFacility;
 import de.businesscode.bcdui.web.filters.RequestLifeCycleFilter;
 
 public class SessionListener implements HttpSessionListener{
@@ -42,5 +43,7 @@ public class SessionListener implements HttpSessionListener{
 
     virtLoggerSession.info(new SessionExpiredSqlLogger.LogRecord(session.getId())); // was level DEBUG
     virtLoggerLogin.info(new LogoutSqlLogger.LogRecord(session.getId())); // was level DEBUG
+
+    FrontendLoggingFacility.removeQueue(session.getId());
   }
 }
\ No newline at end of file
@@ -32,7 +32,6 @@ import org.apache.logging.log4j.core.layout.PatternLayout;
 import de.businesscode.bcdui.logging.AccessSqlLogger;
 import de.businesscode.bcdui.web.filters.RequestLifeCycleFilter;
 import de.businesscode.bcdui.web.wrs.WrsAccessLogEvent;
-import de.businesscode.util.Utils;
 
 @Plugin(name = "AccessLogAppender", category = "Core", elementType = "appender", printObject = true)
 public class AccessLogAppender extends AbstractAppender {
@@ -68,8 +67,7 @@ public class AccessLogAppender extends AbstractAppender {
              sessionId = ThreadContext.get(RequestLifeCycleFilter.MDC_KEY_SESSION_ID),
              reqQuery = wrsLogEvent.getRequestQueryString(),
              requestUrl = wrsLogEvent.getRequestUrl() + (reqQuery != null ? "?" + reqQuery : ""),
-             bindingSetName = wrsLogEvent.getBindingSetName(),
-             requestXML = wrsLogEvent.getRequestDoc() != null ? Utils.serializeElement(wrsLogEvent.getRequestDoc()) : null;
+             bindingSetName = wrsLogEvent.getBindingSetName();
 
       if (requestUrl.length()> 2000)
         requestUrl = requestUrl.substring(0, 2000);
@@ -84,7 +82,7 @@ public class AccessLogAppender extends AbstractAppender {
             , pageHash
             , requestHash
             , bindingSetName
-            , requestXML
+            , wrsLogEvent.getRequestDoc() // serialized by the logger, off the request thread
             , wrsLogEvent.getRowCount()
             , wrsLogEvent.getValueCount()
             , wrsLogEvent.getRsStartTime()
@@ -57,8 +57,9 @@ public class SqlLogAppender extends AbstractAppender {
     // It is assumed that every LoggingEvent passed to the appender is an SqlToDatabaseLogger.LogRecord.
     // If this is not the case, there is a programming error, which should lead to an uncaught exception.
     SqlToDatabaseLogger.LogRecord sqlLogEvent = (SqlToDatabaseLogger.LogRecord) event.getMessage();
-    if(SqlToDatabaseLogger.getInstance().isEnabled()) {
-      SqlToDatabaseLogger.getInstance().process(sqlLogEvent);
+    SqlToDatabaseLogger sqlLogger = SqlToDatabaseLogger.getInstance();
+    if(sqlLogger.isEnabled() && sqlLogger.isSampled()) {
+      sqlLogger.process(sqlLogEvent);
     }
   }
 }
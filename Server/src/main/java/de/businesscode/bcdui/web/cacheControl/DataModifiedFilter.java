@@ -22,10 +22,16 @@ import java.sql.ResultSet;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import jakarta.servlet.Filter;
 import jakarta.servlet.FilterChain;
@@ -47,7 +53,6 @@ import de.businesscode.bcdui.binding.Bindings;
 import de.businesscode.bcdui.toolbox.Configuration;
 import de.businesscode.sqlengine.SQLEngine;
 import de.businesscode.util.StandardNamespaceContext;
-import de.businesscode.util.jdbc.Closer;
 
 /**
  * Cache control based on requested binding set name and data from scope_last_modified
@@ -56,6 +61,8 @@ import de.businesscode.util.jdbc.Closer;
  * - If the scope was found in bcd_cache_scope, we are active, otherwise we do chain.doFilter
  * - If If-Modified-Since was sent, we compare that with the scopes scope_last_modified
  * - If If-Modified-Since was not sent or data was out-dated, we call chain.doFilter and set expires to earliest_next_modified if given
+ * Scopes are refreshed in the background, requests never wait for the database but work on the last successfully read scopes.
+ * Until they are read the first time, requests are just passed on.
  * See bcdui4.DataModifiedFilter in web.xml for how to use
  */
 public class DataModifiedFilter implements Filter {
@@ -63,12 +70,17 @@ public class DataModifiedFilter implements Filter {
   public static final String REFRESH_PERIOD_PARAM_NAME = "SCOPES_REFRESH_PERIOD_MS";
   public static final int REFRESH_PERIOD_DEFAULT = 30*1000;
 
-  protected Map<String,ScopeInfo> scopesLamos = null;
+  // Immutable, replaced as a whole by refreshScopes()
+  protected volatile Map<String,ScopeInfo> scopesLamos = null;
   protected Logger logger = LogManager.getLogger(this.getClass());
-  protected long lastRefreshedMs = 0;
+  protected volatile long lastRefreshedMs = 0;
   protected long refreshPeriodMs = REFRESH_PERIOD_DEFAULT;
   protected Calendar utcCal = null; 
 
+  private ExecutorService refresher = null;
+  private final AtomicBoolean refreshScheduled = new AtomicBoolean(false);
+  private final AtomicLong refreshFailures = new AtomicLong();
+
   // Where in the database to find the scope's last_modified
   protected static final String selectSQL =
       " #set( $t = $bindings.bcd_cache_scope ) "+
@@ -112,10 +124,11 @@ public class DataModifiedFilter implements Filter {
     if( reqScope == null ) return false;
     
     // We found the scope, do we need to refresh its last modified?
-    synchronized (this) {
-      if( scopesLamos==null || refreshNeeded(reqScope) ) refreshScopes();
-    }
-    ScopeInfo scopeInfo = scopesLamos.get(reqScope);
+    // That happens in the background, we continue with what we have
+    Map<String,ScopeInfo> currentScopesLamos = scopesLamos;
+    if( currentScopesLamos==null || refreshNeeded(reqScope) ) scheduleRefresh();
+    if( currentScopesLamos==null ) return false;
+    ScopeInfo scopeInfo = currentScopesLamos.get(reqScope);
     if(scopeInfo==null) return false;
 
     final Long scopeLamo = getScopeLastModified(reqScope);
@@ -183,7 +196,9 @@ public class DataModifiedFilter implements Filter {
    * @return
    */
   protected Long getScopeLastModified(String scope) {
-    ScopeInfo scopeInfo = scopesLamos.get(scope);
+    Map<String,ScopeInfo> currentScopesLamos = scopesLamos;
+    if(currentScopesLamos == null) return null;
+    ScopeInfo scopeInfo = currentScopesLamos.get(scope);
     return scopeInfo != null ? scopeInfo.scopeLastModifiedMs : null;
   }
 
@@ -194,7 +209,9 @@ public class DataModifiedFilter implements Filter {
    * @return
    */
   protected boolean refreshNeeded(String scope) {
-    ScopeInfo scopeInfo = scopesLamos.get(scope);
+    Map<String,ScopeInfo> currentScopesLamos = scopesLamos;
+    if(currentScopesLamos == null) return true;
+    ScopeInfo scopeInfo = currentScopesLamos.get(scope);
     if(scopeInfo == null) return false;
     long nowUtc = Instant.now().toEpochMilli();
     if( nowUtc < refreshPeriodMs + lastRefreshedMs) return false;
@@ -203,38 +220,71 @@ public class DataModifiedFilter implements Filter {
   }
   
   /**
-   * Read all scopes' information fresh from bcd_cache_scope
+   * Triggers {@link #refreshScopes()} in the background unless a refresh is already running or pending
+   */
+  protected void scheduleRefresh() {
+    if( refresher == null || ! refreshScheduled.compareAndSet(false, true) ) return;
+    try {
+      refresher.execute(() -> {
+        try {
+          refreshScopes();
+        } finally {
+          refreshScheduled.set(false);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // we are being destroyed
+      refreshScheduled.set(false);
+    }
+  }
+
+  /**
+   * Read all scopes' information fresh from bcd_cache_scope and publish them at once
+   * On failure, we keep the scopes we have
    */
   protected void refreshScopes() {
 
-    PreparedStatement stmt = null;
-    ResultSet result = null;
     try {
       BindingSet bs  = Bindings.getInstance().get("bcd_cache_scope", new ArrayList<String>());
-      @SuppressWarnings("resource") // is a managed connection
-      Connection con = Configuration.getInstance().getManagedConnection(bs.getJdbcResourceName());
-      
       String sql = new SQLEngine().transform(getSelectSql());
-      stmt = con.prepareStatement(sql);
-      result = stmt.executeQuery();
-  
-      Map<String,ScopeInfo> newScopesLamos = new HashMap<>();
-      while (result.next()) {
-        String scope = result.getString(1);
-        ScopeInfo scopeInfo = new ScopeInfo(scope, result.getTimestamp(2, utcCal), result.getTimestamp(3, utcCal), result.getLong(4));
-        newScopesLamos.put(scope, scopeInfo);
+
+      // We are not running within a request, so we take care for the connection ourselves
+      try( Connection con = Configuration.getInstance().getUnmanagedConnection(bs.getJdbcResourceName());
+           PreparedStatement stmt = con.prepareStatement(sql);
+           ResultSet result = stmt.executeQuery() ) {
+
+        Map<String,ScopeInfo> newScopesLamos = new HashMap<>();
+        while (result.next()) {
+          String scope = result.getString(1);
+          ScopeInfo scopeInfo = new ScopeInfo(scope, result.getTimestamp(2, utcCal), result.getTimestamp(3, utcCal), result.getLong(4));
+          newScopesLamos.put(scope, scopeInfo);
+        }
+        lastRefreshedMs = Instant.now().toEpochMilli();
+        scopesLamos = Collections.unmodifiableMap(newScopesLamos);
       }
-      scopesLamos = newScopesLamos;
-      lastRefreshedMs = Instant.now().toEpochMilli();
 
     } catch(Exception e) {
-      logger.error("Not able to refresh scopes' last modified from database.", e);
-    } finally {
-      Closer.closeAllSQLObjects(result, stmt);
+      refreshFailures.incrementAndGet();
+      logger.error("Not able to refresh scopes' last modified from database, stale age is " + getStaleAgeMs() + "ms.", e);
     }
     
   }
 
+  /**
+   * How old the scopes' information is we currently work with
+   * @return ms since the last successful refresh or -1 if there was none yet
+   */
+  public long getStaleAgeMs() {
+    return scopesLamos == null ? -1 : Instant.now().toEpochMilli() - lastRefreshedMs;
+  }
+
+  /**
+   * @return number of refreshes which failed, in which case the previous scopes' information is kept
+   */
+  public long getRefreshFailures() {
+    return refreshFailures.get();
+  }
+
   /**
    * The query to get the scops' data
    * @return
@@ -253,10 +303,16 @@ public class DataModifiedFilter implements Filter {
     }
     utcCal = Calendar.getInstance();
     utcCal.setTimeZone(TimeZone.getTimeZone("UTC"));
+    refresher = Executors.newSingleThreadExecutor((r) -> {
+      Thread t = new Thread(r, DataModifiedFilter.class.getName() + ".Refresher");
+      t.setDaemon(true);
+      return t;
+    });
   }
 
   @Override
   public void destroy() {
+    if( refresher != null ) refresher.shutdownNow();
   }
 
   /**
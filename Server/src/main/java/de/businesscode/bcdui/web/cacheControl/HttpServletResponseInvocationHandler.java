@@ -15,9 +15,12 @@
 */
 package de.businesscode.bcdui.web.cacheControl;
 
+import java.io.OutputStream;
+import java.io.PrintWriter;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 
+import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.http.HttpServletResponse;
 
 /**
@@ -27,6 +30,11 @@ public class HttpServletResponseInvocationHandler implements InvocationHandler {
     private HttpServletResponse target;
     private String key;
     private ServerCachingFilter serverCacheControl;
+    // The cache item is opened only once per response, however often getOutputStream() or getWriter() is called
+    private OutputStream cacheStream;
+    private PrintWriter cacheWriter;
+    private ServletOutputStream wrappedOutputStream;
+    private PrintWriter wrappedWriter;
 
     /**
      * Constructor
@@ -47,11 +55,34 @@ public class HttpServletResponseInvocationHandler implements InvocationHandler {
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
 
         if ("getOutputStream".equals(method.getName())) {
-            return serverCacheControl.wrap(key, target.getOutputStream());
+            if (wrappedOutputStream == null) {
+                wrappedOutputStream = serverCacheControl.wrap(target.getOutputStream(), openCacheStream());
+            }
+            return wrappedOutputStream;
         } else if ("getWriter".equals(method.getName())) {
-            return serverCacheControl.wrap(key, target.getWriter());
+            if (wrappedWriter == null) {
+                cacheWriter = new PrintWriter(openCacheStream(), true);
+                wrappedWriter = serverCacheControl.wrap(target.getWriter(), cacheWriter);
+            }
+            return wrappedWriter;
         }
 
         return method.invoke(target, args);
     }
+
+    /**
+     * Completes the cache item, to be called when the response was written
+     */
+    public void closeCache() throws Exception {
+        if (cacheWriter != null)
+            cacheWriter.close();
+        if (cacheStream != null)
+            cacheStream.close();
+    }
+
+    private OutputStream openCacheStream() throws Exception {
+        if (cacheStream == null)
+            cacheStream = serverCacheControl.getServerCacheControl().getOutputStream(serverCacheControl.getFilterName(), key);
+        return cacheStream;
+    }
 }
\ No newline at end of file
@@ -70,4 +70,19 @@ public interface IServerCachePersist {
      * @throws Exception
      */
     public long getLastModified(String prefix, String key) throws Exception ;
+    /**
+     * Method writeTo<br>
+     * writes the item depends on prefix and key to the given output stream, which is flushed but not closed.
+     * Implementations may override this to deliver the item more efficiently than via {@link #getInputStream(String, String)}
+     * @param prefix
+     * @param key
+     * @param os
+     * @throws Exception
+     */
+    public default void writeTo(String prefix, String key, OutputStream os) throws Exception {
+        try (InputStream is = getInputStream(prefix, key)) {
+            is.transferTo(os);
+        }
+        os.flush();
+    }
 }
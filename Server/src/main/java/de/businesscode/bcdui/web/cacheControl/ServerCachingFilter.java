@@ -15,10 +15,7 @@
 */
 package de.businesscode.bcdui.web.cacheControl;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.lang.reflect.Proxy;
@@ -31,6 +28,9 @@ import java.util.Iterator;
 import java.util.Locale;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.naming.InitialContext;
 import jakarta.servlet.FilterChain;
@@ -40,6 +40,7 @@ import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.ServletRequest;
 import jakarta.servlet.ServletResponse;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.WriteListener;
 import jakarta.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.output.TeeOutputStream;
@@ -60,7 +61,10 @@ import de.businesscode.bcdui.web.errorLogging.ErrorLogEvent;
  * Only the url's from the init-param will be cached.<br>
  * The store will be get from the JNDI and must be declare by user.<br>
  * The name of the expected store object is BCD-UI/ServerCacheControl<br>
+ * Available stores are {@link FileCachePersist} and {@link TieredCachePersist}, which keeps the most used items in memory.<br>
  * This filter support all expires from ClientCachingFilter excepts CacheRequestDirective.<br>
+ * Only one request creates a missing or outdated item, concurrent requests for the same key wait for it up to
+ * init-param singleFlightTimeoutMs (default 60s) and are otherwise served without cache.<br>
  *
  * For further information please consult your BCD-UI documentation
  *
@@ -68,6 +72,8 @@ import de.businesscode.bcdui.web.errorLogging.ErrorLogEvent;
 public class ServerCachingFilter extends AbstractCacheFilter {
     private static final String KEY_INSTANCE = "de.businesscode.bcdui.web.cacheControl.ServerCachingFilter";
     private final static String URLS_PATTERN_PARAM_NAME = "pattern";
+    public final static String SINGLE_FLIGHT_TIMEOUT_PARAM_NAME = "singleFlightTimeoutMs";
+    public final static long SINGLE_FLIGHT_TIMEOUT_DEFAULT = 60 * 1000;
     //
     protected Logger log = LogManager.getLogger(this.getClass());
     //
@@ -77,6 +83,10 @@ public class ServerCachingFilter extends AbstractCacheFilter {
 
     private String filterName;
 
+    // Keys currently being (re)created, other requests for them wait for the result
+    private final ConcurrentHashMap<String, CountDownLatch> inFlight = new ConcurrentHashMap<>();
+    private long singleFlightTimeoutMs = SINGLE_FLIGHT_TIMEOUT_DEFAULT;
+
     /**
      * Returns an instance bound to given request. May return null if request is not cached. To enable caching for request - please set up such rule in your web descriptor.
      *
@@ -140,38 +150,56 @@ public class ServerCachingFilter extends AbstractCacheFilter {
             Date today = new Date();
             boolean current = isCurrent(requestKey, today);
 
-            if (cached && current) {
+            if (cached && current && inFlight.get(requestKey) == null) {
                 log.info("send cached data.");
                 flushCachedResponse(requestKey, response.getOutputStream());
-            } else if (cached && !current) {
+                return;
+            }
+            //don't cache if the absolute timestamt exceeded
+            if (cached && !current && getDefinedExpires() == Expires.ExpiresAbsDatetime) {
                 getServerCacheControl().dropItem(getFilterName(), requestKey);
-                //don't cache if the absolute timestamt exceeded
-                if(getDefinedExpires() != Expires.ExpiresAbsDatetime){
-                    log.info("create cached data.");
-                    HttpServletResponse cachingResponse = deployCachingResponse((HttpServletResponse) response, requestKey);
-                    try {
-                        chain.doFilter(request, cachingResponse);
-                    }
-                    catch (Exception e) {
-                        getServerCacheControl().dropItem(getFilterName(), requestKey);
-                        throw e;
-                    }
-                }
-                else{
+                chain.doFilter(request, response);
+                return;
+            }
+
+            // Someone else is already creating the item, wait for it
+            CountDownLatch created = new CountDownLatch(1);
+            CountDownLatch running = inFlight.putIfAbsent(requestKey, created);
+            if (running != null) {
+                if (singleFlightTimeoutMs > 0 && running.await(singleFlightTimeoutMs, TimeUnit.MILLISECONDS)
+                        && getServerCacheControl().isCached(getFilterName(), requestKey) && isCurrent(requestKey, new Date())) {
+                    log.info("send cached data created by concurrent request.");
+                    flushCachedResponse(requestKey, response.getOutputStream());
+                } else {
+                    log.info("bypassing cache while item is being created.");
                     chain.doFilter(request, response);
-                    return;
                 }
-            } else {
+                return;
+            }
+
+            try {
+                if (cached)
+                    getServerCacheControl().dropItem(getFilterName(), requestKey);
                 log.info("create cached data.");
                 HttpServletResponse cachingResponse = deployCachingResponse((HttpServletResponse) response, requestKey);
                 try {
-                    chain.doFilter(request, cachingResponse);
+                    // The cache item needs to be closed before it can be dropped
+                    try {
+                        chain.doFilter(request, cachingResponse);
+                    }
+                    finally {
+                        ((HttpServletResponseInvocationHandler) Proxy.getInvocationHandler(cachingResponse)).closeCache();
+                    }
                 }
                 catch (Exception e) {
                     getServerCacheControl().dropItem(getFilterName(), requestKey);
                     throw e;
                 }
             }
+            finally {
+                inFlight.remove(requestKey, created);
+                created.countDown();
+            }
         }
         catch (Exception e) {
             throw new ServletException(e);
@@ -303,6 +331,32 @@ public class ServerCachingFilter extends AbstractCacheFilter {
         if (value != null) {
             getUrls().addAll(FilterUtils.getValuesAsList(value));
         }
+        value = fc.getInitParameter(SINGLE_FLIGHT_TIMEOUT_PARAM_NAME);
+        try {
+            if (value != null)
+                singleFlightTimeoutMs = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            log.warn(SINGLE_FLIGHT_TIMEOUT_PARAM_NAME + " not an integer." + e);
+        }
+    }
+
+    /**
+     * @param outputStream
+     * @param cacheStream
+     * @return ServletOutputStream which supports teeing to the cache item
+     * @throws IOException
+     */
+    protected ServletOutputStream wrap(ServletOutputStream outputStream, OutputStream cacheStream) throws Exception {
+      log.info("deploying ServletOutputStream");
+      final TeeOutputStream tee = new TeeOutputStream(outputStream, cacheStream);
+      return new ServletOutputStream() {
+        @Override public void write(int b) throws IOException { tee.write(b); }
+        @Override public void write(byte[] b, int off, int len) throws IOException { tee.write(b, off, len); }
+        @Override public void flush() throws IOException { tee.flush(); }
+        @Override public void close() throws IOException { tee.close(); }
+        @Override public boolean isReady() { return outputStream.isReady(); }
+        @Override public void setWriteListener(WriteListener writeListener) { outputStream.setWriteListener(writeListener); }
+      };
     }
 
     /**
@@ -310,7 +364,9 @@ public class ServerCachingFilter extends AbstractCacheFilter {
      * @param outputStream
      * @return ServletOutputStream which supports teeing to another stream
      * @throws IOException
+     * @deprecated no longer called by the caching response, which opens the cache item only once, override {@link #wrap(ServletOutputStream, OutputStream)} instead
      */
+    @Deprecated
     protected TeeOutputStream wrap(String key, ServletOutputStream outputStream) throws Exception {
       log.info(String.format("deploying ServletOutputStream on url '%s'", key));
       return new TeeOutputStream(outputStream, getServerCacheControl().getOutputStream(getFilterName(), key));
@@ -324,54 +380,37 @@ public class ServerCachingFilter extends AbstractCacheFilter {
     }
 
     /**
-     * @param key
      * @param writer
-     * @return
+     * @param cacheWriter
+     * @return PrintWriter which supports teeing to the cache item
      * @throws IOException
      */
-    protected PrintWriter wrap(String key, PrintWriter writer) throws Exception {
-        log.info(String.format("deploying PrintWriter on key '%s'", key));
-        return new TeePrintWriterWrapper(writer, new PrintWriter(getServerCacheControl().getOutputStream(getFilterName(), key), true));
+    protected PrintWriter wrap(PrintWriter writer, PrintWriter cacheWriter) throws Exception {
+        log.info("deploying PrintWriter");
+        return new TeePrintWriterWrapper(writer, cacheWriter);
     }
 
     /**
-     * flushes previously saved response to the stream
-     *
      * @param key
-     * @param os
+     * @param writer
+     * @return
      * @throws IOException
+     * @deprecated no longer called by the caching response, which opens the cache item only once, override {@link #wrap(PrintWriter, PrintWriter)} instead
      */
-    public void flushCachedResponse(String key, OutputStream os) throws Exception {
-        InputStream inputStream = null;
-        try {
-            inputStream = getServerCacheControl().getInputStream(getFilterName(), key);
-            flushStream(inputStream, os);
-        }
-        finally {
-            if (inputStream != null) {
-              inputStream.close();
-            }
-        }
+    @Deprecated
+    protected PrintWriter wrap(String key, PrintWriter writer) throws Exception {
+        return wrap(writer, new PrintWriter(getServerCacheControl().getOutputStream(getFilterName(), key), true));
     }
 
     /**
-     * flushing the inputstream into outputstream
+     * flushes previously saved response to the stream
      *
-     * @param is
+     * @param key
      * @param os
      * @throws IOException
      */
-    private void flushStream(InputStream is, OutputStream os) throws IOException {
-        BufferedInputStream bis = new BufferedInputStream(is);
-        BufferedOutputStream bos = new BufferedOutputStream(os);
-
-        int read;
-        byte[] buffer = new byte[4096];
-        while ((read = bis.read(buffer)) > -1) {
-            bos.write(buffer, 0, read);
-        }
-
-        bos.flush();
+    public void flushCachedResponse(String key, OutputStream os) throws Exception {
+        getServerCacheControl().writeTo(getFilterName(), key, os);
     }
 
     /**
@@ -0,0 +1,394 @@
+/*
+  Copyright 2010-2026 BusinessCode GmbH, Germany
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.businesscode.bcdui.web.cacheControl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+/**
+ * Server cache store with a size-bounded in-memory LRU tier in front of files in a folder.<br>
+ * Items are written to a file and, if not bigger than maxItemBytes, kept in memory as well, once their OutputStream is closed.
+ * Items found only on disk are taken into memory when read, if small enough, otherwise they are delivered via their FileChannel.<br>
+ * Each prefix has a generation which is part of the file names, {@link #clean(String)} just switches to a new generation,
+ * files of the old one are deleted in the background and memory items of it age out.<br>
+ * Declare it as JNDI resource BCD-UI/ServerCacheControl with the properties absoluteFolderPath, maxMemoryBytes and maxItemBytes.
+ */
+public class TieredCachePersist implements IServerCachePersist {
+    public static final long DEFAULT_MAX_MEMORY_BYTES = 64L * 1024 * 1024;
+    public static final long DEFAULT_MAX_ITEM_BYTES = 2L * 1024 * 1024;
+
+    private File rootFolder;
+    private long maxMemoryBytes = DEFAULT_MAX_MEMORY_BYTES;
+    private long maxItemBytes = DEFAULT_MAX_ITEM_BYTES;
+    private final Logger logger = LogManager.getLogger(TieredCachePersist.class);
+
+    // Current generation per prefix, starts with a timestamp so that files of a previous run are never taken
+    private final Map<String, String> generations = new ConcurrentHashMap<>();
+    private final AtomicLong generationCounter = new AtomicLong(System.currentTimeMillis());
+
+    // Memory tier in access order, guarded by itself
+    private final LinkedHashMap<String, MemoryItem> memoryItems = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes = 0;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+
+    private static final ExecutorService cleaner = Executors.newSingleThreadExecutor((r) -> {
+        Thread t = new Thread(r, TieredCachePersist.class.getName() + ".Cleaner");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Constructor
+     */
+    public TieredCachePersist(){
+        super();
+    }
+
+    /**
+     * Method setAbsoluteFolderPath
+     * @param absoluteFolderPath
+     */
+    public void setAbsoluteFolderPath(String absoluteFolderPath){
+        rootFolder = new File(absoluteFolderPath);
+        if(!rootFolder.exists()){
+            rootFolder.mkdirs();
+            logger.info("create folder for server side caching: " + absoluteFolderPath);
+        }
+    }
+
+    /**
+     * Method setMaxMemoryBytes
+     * @param maxMemoryBytes total size of all items kept in memory, 0 disables the memory tier
+     */
+    public void setMaxMemoryBytes(long maxMemoryBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    /**
+     * Method setMaxItemBytes
+     * @param maxItemBytes bigger items are only kept on disk
+     */
+    public void setMaxItemBytes(long maxItemBytes) {
+        this.maxItemBytes = maxItemBytes;
+    }
+
+    /**
+     * @see de.businesscode.bcdui.web.cacheControl.IServerCachePersist#clean(String)
+     */
+    @Override
+    public void clean(final String prefix) throws Exception {
+        final String generation = Long.toString(generationCounter.incrementAndGet(), Character.MAX_RADIX);
+        generations.put(prefix, generation);
+        logger.info("cleaning cache items for: " + prefix);
+
+        // Files of older generations are no longer found, remove them from disk in the background
+        final String filePrefix = prefix + ".";
+        final String currentPrefix = getNamePrefix(prefix, generation);
+        cleaner.execute(() -> {
+            File[] listFiles = getRootFolder().listFiles((dir, name) -> name.startsWith(filePrefix) && !name.startsWith(currentPrefix));
+            if (listFiles == null)
+                return;
+            for (File file : listFiles) {
+                if (!file.delete())
+                    logger.error("could not delete cache file: " + file.getName());
+            }
+        });
+    }
+
+    /**
+     * @see de.businesscode.bcdui.web.cacheControl.IServerCachePersist#getInputStream(String, String)
+     */
+    @Override
+    public InputStream getInputStream(String prefix, String key) throws Exception {
+        String name = getName(prefix, key);
+        byte[] data = getFromMemory(name);
+        if (data == null)
+            data = loadIntoMemory(name);
+        if (data != null)
+            return new ByteArrayInputStream(data);
+        diskHits.incrementAndGet();
+        return new FileInputStream(new File(getRootFolder(), name));
+    }
+
+    /**
+     * Delivers items from memory or via a FileChannel from disk
+     * @see de.businesscode.bcdui.web.cacheControl.IServerCachePersist#writeTo(String, String, OutputStream)
+     */
+    @Override
+    public void writeTo(String prefix, String key, OutputStream os) throws Exception {
+        String name = getName(prefix, key);
+        byte[] data = getFromMemory(name);
+        if (data == null)
+            data = loadIntoMemory(name);
+        if (data != null) {
+            os.write(data);
+        } else {
+            diskHits.incrementAndGet();
+            try (FileChannel channel = FileChannel.open(new File(getRootFolder(), name).toPath(), StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(os);
+                long size = channel.size();
+                long position = 0;
+                while (position < size)
+                    position += channel.transferTo(position, size - position, target);
+            }
+        }
+        os.flush();
+    }
+
+    /**
+     * @see de.businesscode.bcdui.web.cacheControl.IServerCachePersist#getOutputStream(String, String)
+     */
+    @Override
+    public OutputStream getOutputStream(String prefix, String key) throws Exception {
+        String name = getName(prefix, key);
+        logger.info("open output stream for: " + name);
+        File result = new File(getRootFolder(), name);
+        if(result.exists()){
+            logger.warn("cached file \""+result.getName()+"\" already exists and will be overwritten");
+        }
+        removeFromMemory(name);
+        return new TieredOutputStream(name, result);
+    }
+
+    /**
+     * @see de.businesscode.bcdui.web.cacheControl.IServerCachePersist#dropItem(String, String)
+     */
+    @Override
+    public void dropItem(String prefix, String key) throws Exception {
+        String name = getName(prefix, key);
+        removeFromMemory(name);
+        if (new File(getRootFolder(), name).delete())
+            logger.info("remove cached file: " + name);
+    }
+
+    /**
+     * @see de.businesscode.bcdui.web.cacheControl.IServerCachePersist#isCached(String, String)
+     */
+    @Override
+    public boolean isCached(String prefix, String key) throws Exception {
+        String name = getName(prefix, key);
+        synchronized (memoryItems) {
+            if (memoryItems.containsKey(name))
+                return true;
+        }
+        return new File(getRootFolder(), name).exists();
+    }
+
+    /**
+     * @see de.businesscode.bcdui.web.cacheControl.IServerCachePersist#getLastModified(String, String)
+     */
+    @Override
+    public long getLastModified(String prefix, String key) throws Exception {
+        String name = getName(prefix, key);
+        synchronized (memoryItems) {
+            MemoryItem item = memoryItems.get(name);
+            if (item != null)
+                return item.lastModified;
+        }
+        return new File(getRootFolder(), name).lastModified();
+    }
+
+    /**
+     * @return number of items delivered from memory
+     */
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    /**
+     * @return number of items delivered from disk
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * @return bytes currently held in memory
+     */
+    public long getMemoryBytes() {
+        synchronized (memoryItems) {
+            return memoryBytes;
+        }
+    }
+
+    //=========================================================================
+
+    /**
+     * @return the rootFolder
+     */
+    private File getRootFolder() {
+        return rootFolder;
+    }
+
+    /**
+     * @return file and memory name of the item in the current generation of its prefix
+     */
+    private String getName(String prefix, String key) {
+        String generation = generations.computeIfAbsent(prefix, p -> Long.toString(generationCounter.incrementAndGet(), Character.MAX_RADIX));
+        return getNamePrefix(prefix, generation) + key.replace("/", "_");
+    }
+
+    private static String getNamePrefix(String prefix, String generation) {
+        return prefix + "." + generation + ".";
+    }
+
+    private byte[] getFromMemory(String name) {
+        synchronized (memoryItems) {
+            MemoryItem item = memoryItems.get(name);
+            if (item == null)
+                return null;
+            memoryHits.incrementAndGet();
+            return item.data;
+        }
+    }
+
+    /**
+     * Reads an item from disk into memory, if it is small enough
+     * @return the item's data or null if it is to be read from disk
+     */
+    private byte[] loadIntoMemory(String name) throws IOException {
+        File file = new File(getRootFolder(), name);
+        long length = file.length();
+        if (maxMemoryBytes <= 0 || length > maxItemBytes)
+            return null;
+        long lastModified = file.lastModified();
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file.toPath());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        diskHits.incrementAndGet();
+        putIntoMemory(name, data, lastModified);
+        return data;
+    }
+
+    private void putIntoMemory(String name, byte[] data, long lastModified) {
+        if (maxMemoryBytes <= 0 || data.length > maxItemBytes)
+            return;
+        synchronized (memoryItems) {
+            MemoryItem old = memoryItems.put(name, new MemoryItem(data, lastModified));
+            memoryBytes += data.length - (old != null ? old.data.length : 0);
+            // evict least recently used items
+            Iterator<MemoryItem> it = memoryItems.values().iterator();
+            while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+                memoryBytes -= it.next().data.length;
+                it.remove();
+            }
+        }
+    }
+
+    private void removeFromMemory(String name) {
+        synchronized (memoryItems) {
+            MemoryItem old = memoryItems.remove(name);
+            if (old != null)
+                memoryBytes -= old.data.length;
+        }
+    }
+
+    /**
+     * An item in the memory tier
+     */
+    private static final class MemoryItem {
+        final byte[] data;
+        final long lastModified;
+        MemoryItem(byte[] data, long lastModified) {
+            this.data = data;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Writes to the file and collects the data for the memory tier as long as it does not exceed maxItemBytes
+     */
+    private class TieredOutputStream extends OutputStream {
+        private final String name;
+        private final File file;
+        private final OutputStream fileStream;
+        private ByteArrayOutputStream memoryStream;
+        private boolean closed = false;
+
+        TieredOutputStream(String name, File file) throws IOException {
+            this.name = name;
+            this.file = file;
+            this.fileStream = new FileOutputStream(file);
+            this.memoryStream = maxMemoryBytes > 0 ? new ByteArrayOutputStream() : null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            fileStream.write(b);
+            if (memoryStream != null) {
+                if (memoryStream.size() + 1 > maxItemBytes)
+                    memoryStream = null;
+                else
+                    memoryStream.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            fileStream.write(b, off, len);
+            if (memoryStream != null) {
+                if (memoryStream.size() + len > maxItemBytes)
+                    memoryStream = null;
+                else
+                    memoryStream.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            fileStream.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+            closed = true;
+            fileStream.close();
+            // The item may have been dropped in the meantime, for example due to an error
+            if (memoryStream != null && file.exists())
+                putIntoMemory(name, memoryStream.toByteArray(), file.lastModified());
+            memoryStream = null;
+        }
+    }
+}
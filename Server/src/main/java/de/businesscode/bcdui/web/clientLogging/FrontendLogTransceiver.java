@@ -59,8 +59,9 @@ public class FrontendLogTransceiver extends HttpServlet {
       out.writeStartDocument();
       out.writeStartElement("Data");
       out.writeNamespace(XMLCONSTANTS_NAMESPACES_LOG4J, XMLCONSTANTS_NAMESPACES_LOG4J);
-      if(sessionId != null){
-        SingletonStringQueue.getInstance(sessionId).flush(out);
+      SingletonStringQueue queue = sessionId != null ? SingletonStringQueue.find(sessionId) : null;
+      if(queue != null){
+        queue.flush(out);
       }
       out.writeEndElement();
       out.writeEndDocument();
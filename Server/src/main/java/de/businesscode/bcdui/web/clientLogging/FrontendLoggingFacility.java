@@ -49,4 +49,11 @@ public class FrontendLoggingFacility {
   public static void deployLogger() {
     getLogger();
   }
+
+  /**
+   * drops the messages queued for the client of the given session, to be called when the session is destroyed
+   */
+  public static void removeQueue(String sessionId) {
+    SingletonStringQueue.remove(sessionId);
+  }
 }
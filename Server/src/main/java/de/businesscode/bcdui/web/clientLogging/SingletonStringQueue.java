@@ -18,49 +18,136 @@ package de.businesscode.bcdui.web.clientLogging;
 
 import java.io.IOException;
 import java.io.Writer;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
+import de.businesscode.bcdui.toolbox.config.BareConfiguration;
+
 
 /**
  *
  * This singleton string queue is used with {@link FrontendQueueAppender} and
- * its consumer
- *
- * FIXME optimization needed: aging should be added, so content is dropped after some time
+ * its consumer. There is one queue per session, holding up to bcdui/clientLogging/queueSize (default 1000) messages,
+ * if the client does not fetch them, the oldest ones are dropped and counted.
+ * A queue is removed when its session is destroyed or, for requests without a session, when it was not used
+ * for bcdui/clientLogging/queueMaxIdleSeconds (default 1800).
  *
  */
-class SingletonStringQueue extends ConcurrentLinkedQueue<String> {
-  private static final long serialVersionUID = 1L;
-  private static final Map<String, SingletonStringQueue> queueMap = new HashMap<String, SingletonStringQueue>();
+class SingletonStringQueue {
+  static final String PARAM_QUEUE_SIZE = "bcdui/clientLogging/queueSize";
+  static final int DEFAULT_QUEUE_SIZE = 1000;
+  static final String PARAM_MAX_IDLE_SECONDS = "bcdui/clientLogging/queueMaxIdleSeconds";
+  static final int DEFAULT_MAX_IDLE_SECONDS = 1800;
+
+  private static final Map<String, SingletonStringQueue> queueMap = new ConcurrentHashMap<>();
+  private static volatile long nextEviction = System.currentTimeMillis();
+
+  private static final class Config {
+    static final int queueSize = BareConfiguration.getInstance().getConfigurationParameter(PARAM_QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
+    static final long maxIdleMillis = BareConfiguration.getInstance().getConfigurationParameter(PARAM_MAX_IDLE_SECONDS, DEFAULT_MAX_IDLE_SECONDS) * 1000L;
+  }
+
+  private final String[] buffer;
+  private int head = 0;
+  private int size = 0;
+  private long dropped = 0;
+  private volatile long lastAccess = System.currentTimeMillis();
 
+  private SingletonStringQueue(int capacity) {
+    buffer = new String[Math.max(1, capacity)];
+  }
+
+  /**
+   * @return the queue of the given session, created if needed
+   */
   public static SingletonStringQueue getInstance(String key){
-    SingletonStringQueue queue = queueMap.get(key);
-
-    if(queue == null) {
-      synchronized(queueMap){
-        queue = queueMap.get(key);
-        if(queue == null){
-          queue = new SingletonStringQueue();
-        }
-        queueMap.put(key, queue);
-      }
+    evictIdle();
+    return queueMap.computeIfAbsent(key, k -> new SingletonStringQueue(Config.queueSize));
+  }
+
+  /**
+   * @return the queue of the given session or null if nothing was queued for it
+   */
+  public static SingletonStringQueue find(String key){
+    return queueMap.get(key);
+  }
+
+  /**
+   * drops the queue of the given session
+   */
+  public static void remove(String key){
+    queueMap.remove(key);
+  }
+
+  /**
+   * drops queues not used for maxIdleSeconds, checked at most once per minute
+   */
+  private static void evictIdle() {
+    long now = System.currentTimeMillis();
+    if(now < nextEviction)
+      return;
+    nextEviction = now + 60 * 1000;
+    long minAccess = now - Config.maxIdleMillis;
+    queueMap.values().removeIf(q -> q.lastAccess < minAccess);
+  }
+
+  /**
+   * appends the message, dropping the oldest one if the queue is full
+   */
+  public synchronized void add(String s) {
+    lastAccess = System.currentTimeMillis();
+    if(size == buffer.length){
+      buffer[head] = null;
+      head = (head + 1) % buffer.length;
+      size--;
+      dropped++;
     }
+    buffer[(head + size) % buffer.length] = s;
+    size++;
+  }
 
-    return queue;
+  /**
+   * @return the next message or null if the queue is empty
+   */
+  private String poll() {
+    if(size == 0)
+      return null;
+    String s = buffer[head];
+    buffer[head] = null;
+    head = (head + 1) % buffer.length;
+    size--;
+    return s;
+  }
+
+  /**
+   * @return a message about dropped messages since the last flush or null if none were dropped
+   */
+  private String pollDropped() {
+    if(dropped == 0)
+      return null;
+    String s = dropped + " log messages were dropped because the queue of " + buffer.length + " messages was full" + System.lineSeparator();
+    dropped = 0;
+    return s;
   }
 
   public synchronized void flush(Writer w) throws IOException {
-    String s;
+    lastAccess = System.currentTimeMillis();
+    String s = pollDropped();
+    if(s != null){
+      w.append(s);
+    }
     while((s=poll()) != null){
       w.append(s);
     }
   }
   public synchronized void flush(XMLStreamWriter w) throws XMLStreamException {
-    String s;
+    lastAccess = System.currentTimeMillis();
+    String s = pollDropped();
+    if(s != null){
+      w.writeCData(s);
+    }
     while((s=poll()) != null){
       w.writeCData(s);
     }
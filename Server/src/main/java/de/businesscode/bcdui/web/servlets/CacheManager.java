@@ -28,6 +28,7 @@ import org.apache.logging.log4j.LogManager;
 
 import de.businesscode.bcdui.binding.Bindings;
 import de.businesscode.bcdui.binding.exc.BindingException;
+import de.businesscode.bcdui.wrs.load.WrqPlanCache;
 import org.apache.commons.text.StringEscapeUtils;
 import org.apache.commons.vfs2.FileSystemException;
 import de.businesscode.bcdui.cache.CacheFactory;
@@ -127,8 +128,8 @@ public class CacheManager extends HttpServlet {
   }
 
   private void regenerateBindings() throws BindingException{
-    Bindings.clear();
-    Bindings.getInstance();
+    Bindings.reload();
+    WrqPlanCache.getInstance().clear();
     log.trace("regenerated bindings");
   }
 
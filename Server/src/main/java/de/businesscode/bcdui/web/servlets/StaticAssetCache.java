@@ -0,0 +1,141 @@
+/*
+  Copyright 2010-2026 BusinessCode GmbH, Germany
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.businesscode.bcdui.web.servlets;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Holds the response bodies of {@link StaticResourceServlet}, i.e. the resource content after the js rewriting, together with a gzipped variant
+ * for text content, an ETag and the last modification time. An asset is keyed by the request variant and only used while the version of its source,
+ * derived from the last modification time or the VFS ETag, is unchanged.
+ * The cache is bounded by bcdui/staticResource/cacheMaxBytes (default 64MB) of content, least recently used assets are dropped first,
+ * assets bigger than a quarter of it are served without being cached. A cacheMaxBytes of 0 switches the cache off.
+ */
+class StaticAssetCache {
+
+  static final String PARAM_MAX_BYTES = "bcdui/staticResource/cacheMaxBytes";
+  static final int DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+
+  // Smaller content does not gain from compression
+  private static final int MIN_GZIP_SIZE = 1024;
+
+  private final long maxBytes;
+  private final LinkedHashMap<String, Asset> assets = new LinkedHashMap<>(256, 0.75f, true);
+  private long bytes = 0;
+
+  StaticAssetCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  boolean isEnabled() {
+    return maxBytes > 0;
+  }
+
+  /**
+   * @param key request variant
+   * @param version version of the source
+   * @return the cached asset if it was created from this version of the source, otherwise null
+   */
+  synchronized Asset get(String key, String version) {
+    Asset asset = assets.get(key);
+    return asset != null && asset.version.equals(version) ? asset : null;
+  }
+
+  /**
+   * Creates the asset and caches it if it fits
+   * @param key request variant
+   * @param version version of the source
+   * @param data the response body, which must not be modified afterwards
+   * @param contentType of the response, used to decide on compression, can be null
+   * @param lastModified of the source, 0 if unknown
+   * @return the new asset, which is also returned if it was not cached
+   */
+  Asset put(String key, String version, byte[] data, String contentType, long lastModified) throws IOException {
+    boolean fits = isEnabled() && data.length <= maxBytes / 4;
+    byte[] gzipped = fits && isCompressible(contentType, data.length) ? gzip(data) : null;
+    Asset asset = new Asset(version, data, gzipped, lastModified);
+    if( ! fits )
+      return asset;
+
+    synchronized( this ) {
+      Asset old = assets.put(key, asset);
+      if( old != null )
+        bytes -= old.size();
+      bytes += asset.size();
+      for( Iterator<Asset> it = assets.values().iterator(); bytes > maxBytes && it.hasNext(); ) {
+        bytes -= it.next().size();
+        it.remove();
+      }
+    }
+    return asset;
+  }
+
+  synchronized void clear() {
+    assets.clear();
+    bytes = 0;
+  }
+
+  private static boolean isCompressible(String contentType, int length) {
+    if( contentType == null || length < MIN_GZIP_SIZE )
+      return false;
+    String ct = contentType.toLowerCase();
+    return ct.startsWith("text/") || ct.contains("javascript") || ct.contains("json") || ct.contains("xml");
+  }
+
+  /**
+   * @return the gzipped data or null if it does not get smaller
+   */
+  private static byte[] gzip(byte[] data) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length / 3);
+    try (GZIPOutputStream gz = new GZIPOutputStream(bos)) {
+      gz.write(data);
+    }
+    return bos.size() < data.length ? bos.toByteArray() : null;
+  }
+
+  /**
+   * A response body with its variants and validators
+   */
+  static final class Asset {
+    private final String version;
+    final byte[] data;
+    final byte[] gzipped;
+    final long lastModified;
+    final String eTag;
+    final String gzipETag;
+
+    private Asset(String version, byte[] data, byte[] gzipped, long lastModified) {
+      this.version = version;
+      this.data = data;
+      this.gzipped = gzipped;
+      this.lastModified = (lastModified > 0 ? lastModified : System.currentTimeMillis()) / 1000 * 1000; // http dates have seconds precision
+      CRC32 crc = new CRC32();
+      crc.update(data);
+      String tag = Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(data.length);
+      this.eTag = "\"" + tag + "\"";
+      this.gzipETag = "\"" + tag + "-gz\"";
+    }
+
+    private long size() {
+      return data.length + (gzipped != null ? gzipped.length : 0);
+    }
+  }
+}
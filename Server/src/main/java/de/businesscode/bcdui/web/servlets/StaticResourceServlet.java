@@ -34,6 +34,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
@@ -52,7 +53,9 @@ import de.businesscode.util.SOAPFaultMessage;
  * This class makes files under such an address available, which really come from the database or a jar (and classpath in general) within the app.war instead.
  * Main usage is the virtual file system and making BCD-UI static files like js and xslt available from bcd-ui-core.jar within app.war.
  * The search order is: First vfs, then file system (on server this is normal file from the war), then jar files.
- * Note: Since vfs caches the file list from the database (not the actual content), a lookup in vfs is no performance hit.
+ * Note: Since vfs caches the file list from the database and the content of served files, a lookup in vfs is no performance hit.
+ * Responses are kept in a {@link StaticAssetCache}, sent with ETag and Last-Modified, gzipped for text content if the client accepts it,
+ * and answered with 304 for conditional requests of a still valid copy. As responses depend on request headers, the servlet's urls must not be covered by ServerCachingFilter.
  *
  * {@code
  *  <servlet>
@@ -92,6 +95,8 @@ public class StaticResourceServlet extends HttpServlet {
   public static final Pattern customElementsReplace2 = Pattern.compile("await import\\(\"[\\.\\/]+modules/[/\\w]+\\.js\"\\);");
   private final int patternImportBcduiApiStubsSearchLen = 1000;
 
+  private StaticAssetCache assetCache;
+
   @Override
   public void init(ServletConfig config) throws ServletException {
     super.init(config);
@@ -100,6 +105,8 @@ public class StaticResourceServlet extends HttpServlet {
       vfsFileExtensions = getInitParameter(vfsFileExtensionsInitParamName).toLowerCase().split(" ");
     }
     Arrays.sort(vfsFileExtensions);// for binary searching
+
+    assetCache = new StaticAssetCache(Configuration.getInstance().getConfigurationParameter(StaticAssetCache.PARAM_MAX_BYTES, StaticAssetCache.DEFAULT_MAX_BYTES));
   }
 
   /**
@@ -141,9 +148,31 @@ public class StaticResourceServlet extends HttpServlet {
       resp.setContentType(contentType);
     }
 
-    byte[] data = resource.getData();
+    // includes are written as they are, headers and status do not apply to them
+    boolean isInclude = req.getAttribute("jakarta.servlet.include.request_uri") != null;
+    String version = isInclude || Configuration.isCacheDisabled() || ! assetCache.isEnabled() ? null : getVersion(resource);
+    if (version == null) {
+      byte[] data = processData(req, resource.getData());
+      resp.setContentLength(data.length);
+      resp.getOutputStream().write(data);
+      return;
+    }
 
-    // Remove import {bcdui} from "bcduiApiStubs.js" from js files
+    String key = (req.getRequestURI().contains("/js/nonmodules/") ? "nonmodules:" : "") + (req.getRequestURI().endsWith(".js") ? "js:" : "") + resource.getPath();
+    StaticAssetCache.Asset asset = assetCache.get(key, version);
+    if (asset == null) {
+      Long lastModified = resource.getLastModified();
+      asset = assetCache.put(key, version, processData(req, resource.getData()), contentType, lastModified != null ? lastModified : 0);
+    }
+    writeAsset(req, resp, asset);
+  }
+
+  /**
+   * Remove import {bcdui} from "bcduiApiStubs.js" from js files and for nonmodules some import/export patterns
+   * @param data the resource content, modified in place
+   * @return the response body
+   */
+  protected byte[] processData(HttpServletRequest req, byte[] data) {
     if (req.getRequestURI().endsWith(".js")) {
       String asString = new String(Arrays.copyOfRange(data, 0, patternImportBcduiApiStubsSearchLen));
       Matcher matcher = patternImportBcduiApiStubs.matcher(asString);
@@ -162,8 +191,80 @@ public class StaticResourceServlet extends HttpServlet {
           Arrays.fill(data, matcher.start(), matcher.end(), (byte)' ');
       }
     }
-    resp.setContentLength(data.length);
-    resp.getOutputStream().write(data);
+    return data;
+  }
+
+  /**
+   * @return the version of the resource's content or null if it is unknown and the resource can thus not be cached
+   */
+  protected String getVersion(Resource resource) throws IOException {
+    if (resource instanceof VfsResourceProvider.VfsResource) {
+      String eTag = ((VfsResourceProvider.VfsResource)resource).getETag();
+      return eTag != null ? "vfs:" + eTag : null;
+    }
+    Long lastModified = resource.getLastModified();
+    return lastModified != null && lastModified > 0 ? "lm:" + lastModified : null;
+  }
+
+  /**
+   * Writes the cached asset, gzipped if the client accepts it, or answers with 304 if the client's copy is still valid.
+   * The cached array is written directly, there is no copy per request
+   */
+  private void writeAsset(HttpServletRequest req, HttpServletResponse resp, StaticAssetCache.Asset asset) throws IOException {
+    boolean gzip = asset.gzipped != null && acceptsGzip(req);
+    String eTag = gzip ? asset.gzipETag : asset.eTag;
+    resp.setHeader("ETag", eTag);
+    resp.setDateHeader("Last-Modified", asset.lastModified);
+    if (asset.gzipped != null)
+      resp.setHeader("Vary", "Accept-Encoding");
+
+    if (isNotModified(req, asset, eTag)) {
+      resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    byte[] body = asset.data;
+    if (gzip) {
+      resp.setHeader("Content-Encoding", "gzip");
+      body = asset.gzipped;
+    }
+    resp.setContentLength(body.length);
+    resp.getOutputStream().write(body);
+  }
+
+  /**
+   * If-None-Match takes precedence over If-Modified-Since
+   */
+  private boolean isNotModified(HttpServletRequest req, StaticAssetCache.Asset asset, String eTag) {
+    String ifNoneMatch = req.getHeader("If-None-Match");
+    if (ifNoneMatch != null) {
+      for (String tag : ifNoneMatch.split(",")) {
+        tag = tag.trim();
+        if (tag.startsWith("W/"))
+          tag = tag.substring(2);
+        if (tag.equals("*") || tag.equals(eTag))
+          return true;
+      }
+      return false;
+    }
+    try {
+      long ifModifiedSince = req.getDateHeader("If-Modified-Since");
+      return ifModifiedSince != -1 && asset.lastModified <= ifModifiedSince;
+    } catch (IllegalArgumentException e) {
+      return false; // unparsable date
+    }
+  }
+
+  private boolean acceptsGzip(HttpServletRequest req) {
+    String acceptEncoding = req.getHeader("Accept-Encoding");
+    if (acceptEncoding == null)
+      return false;
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.trim().split(";");
+      if (parts[0].trim().equalsIgnoreCase("gzip"))
+        return ! (parts.length > 1 && parts[1].trim().matches("q=0(\\.0*)?"));
+    }
+    return false;
   }
 
   @Override
@@ -396,8 +497,13 @@ public class StaticResourceServlet extends HttpServlet {
       if (file != null){
         lm = file.lastModified();
       }
-      else if (con == null){
-        con = url.openConnection();
+      else if (url != null && "file".equals(url.getProtocol())){// a connection to a file url would open the file
+        lm = FileUtils.toFile(url).lastModified();
+      }
+      else if (url != null){
+        if (con == null){
+          con = url.openConnection();
+        }
         lm = con.getLastModified();
       }
       return lm;
@@ -18,6 +18,7 @@ package de.businesscode.bcdui.web.servlets;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.Collections;
 
 import jakarta.servlet.ServletContext;
 
@@ -27,6 +28,10 @@ import org.apache.commons.vfs2.FileSystemException;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
+import de.businesscode.bcdui.binding.Bindings;
+import de.businesscode.bcdui.binding.exc.BindingException;
+import de.businesscode.bcdui.vfs.provider.database.DatabaseFileSystemConfigBuilder;
+import de.businesscode.bcdui.vfs.provider.database.VFSContentCache;
 import de.businesscode.bcdui.vfs.provider.database.VFSManagerFactory;
 import de.businesscode.bcdui.web.servlets.StaticResourceServlet.Resource;
 import de.businesscode.bcdui.web.servlets.StaticResourceServlet.ResourceProvider;
@@ -62,10 +67,19 @@ public class VfsResourceProvider implements StaticResourceServlet.ResourceProvid
       }
 
       if (vfsCache != null && vfsCache.isElementInMemory(decode)) {
+        // content cached from an earlier request, no database access needed
+        VFSContentCache contentCache = isContentCacheable() ? VFSContentCache.getInstance() : null;
+        VFSContentCache.Entry entry = contentCache != null ? contentCache.get(decode) : null;
+        if (entry != null) {
+          log.trace("fetch resource from VFS content cache: " + decode);
+          return new VfsResource(fullyQualifiedPath, entry);
+        }
+
         log.trace("try to fetch resource from VFS: " + decode);
+        long generation = contentCache != null ? contentCache.getGeneration() : 0;
         FileObject vFile = VFSManagerFactory.getManager().resolveFile("sql:" + fullyQualifiedPath);
         if (vFile != null && vFile.isReadable()) {
-          res = new VfsResource(fullyQualifiedPath, vFile);
+          res = new VfsResource(fullyQualifiedPath, vFile, contentCache, decode, generation);
         }
       }
 
@@ -75,6 +89,17 @@ public class VfsResourceProvider implements StaticResourceServlet.ResourceProvid
     }
   }
 
+  /**
+   * The content of bcd_virtualFileSystem is only shared between requests if it does not depend on the subject
+   */
+  protected boolean isContentCacheable() {
+    try {
+      return VFSContentCache.getInstance().isEnabled() && ! Bindings.getInstance().get(DatabaseFileSystemConfigBuilder.bindingSetId, Collections.emptyList()).hasSubjectFilters();
+    } catch (BindingException e) {
+      return false;
+    }
+  }
+
   /**
    * represents a single resource to VFS
    */
@@ -91,9 +116,33 @@ public class VfsResourceProvider implements StaticResourceServlet.ResourceProvid
      */
     private final FileObject fileObject;
 
+    /**
+     * content cache to fill when reading from fileObject, or null
+     */
+    private final VFSContentCache contentCache;
+    private final String decodedPath;
+    private final long generation;
+
+    /**
+     * the content, either from the content cache or once read from fileObject
+     */
+    private VFSContentCache.Entry entry;
+
     protected VfsResource(String pathPr, FileObject fileObjectPr) {
+      this(pathPr, fileObjectPr, null, null, 0);
+    }
+
+    protected VfsResource(String pathPr, FileObject fileObjectPr, VFSContentCache contentCache, String decodedPath, long generation) {
       this.path = pathPr;
       this.fileObject = fileObjectPr;
+      this.contentCache = contentCache;
+      this.decodedPath = decodedPath;
+      this.generation = generation;
+    }
+
+    protected VfsResource(String pathPr, VFSContentCache.Entry entry) {
+      this(pathPr, null, null, null, 0);
+      this.entry = entry;
     }
 
     @Override
@@ -103,18 +152,31 @@ public class VfsResourceProvider implements StaticResourceServlet.ResourceProvid
 
     @Override
     public boolean notFound() {
-      return (fileObject == null);
+      return (fileObject == null && entry == null);
     }
 
     @Override
     public Long getLastModified() throws IOException {
+      if (entry != null)
+        return entry.getLastModified();
       return fileObject.getContent().getLastModifiedTime();
     }
 
+    /**
+     * @return an ETag derived from the content, null if the content was not read yet
+     */
+    public String getETag() {
+      return entry != null ? entry.getETag() : null;
+    }
+
     @Override
     public byte[] getData() throws IOException {
+      if (entry != null)
+        return entry.getData();
+
+      byte[] data;
       try (InputStream is = fileObject.getContent().getInputStream()) {
-        return IOUtils.toByteArray(is);
+        data = IOUtils.toByteArray(is);
       } finally {
         try {
           fileObject.close();
@@ -122,6 +184,11 @@ public class VfsResourceProvider implements StaticResourceServlet.ResourceProvid
           log.warn("failed to close FileObject", e);
         }
       }
+      if (contentCache != null) {
+        entry = contentCache.put(decodedPath, data, generation);
+        return entry.getData();
+      }
+      return data;
     }
   }
 }
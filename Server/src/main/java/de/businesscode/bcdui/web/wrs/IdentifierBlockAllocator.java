@@ -0,0 +1,159 @@
+/*
+  Copyright 2010-2026 BusinessCode GmbH, Germany
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.businesscode.bcdui.web.wrs;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.businesscode.bcdui.binding.Bindings;
+import de.businesscode.bcdui.toolbox.Configuration;
+import de.businesscode.bcdui.toolbox.config.BareConfiguration;
+import de.businesscode.sqlengine.SQLEngine;
+import de.businesscode.util.jdbc.Closer;
+
+/**
+ * Hands out identifiers from bcd_identifier, reserving them in blocks of bcdui/identifier/reserveSize (default 1000) per scope.
+ * Requests are served from the reserved block without locking, only reserving the next block goes to the database.
+ * As each reservation increases lastid_ of the scope in the database, nodes of a cluster get distinct blocks,
+ * identifiers are unique but not necessarily ascending across nodes. Reserved but unused identifiers are lost on shutdown.
+ * A reserveSize of 1 or less switches reservation off, requests bigger than reserveSize always go to the database.
+ */
+public class IdentifierBlockAllocator {
+
+  public static final String PARAM_RESERVE_SIZE = "bcdui/identifier/reserveSize";
+  public static final int DEFAULT_RESERVE_SIZE = 1000;
+
+  private static final class Holder {
+    static final IdentifierBlockAllocator instance = new IdentifierBlockAllocator(BareConfiguration.getInstance().getConfigurationParameter(PARAM_RESERVE_SIZE, DEFAULT_RESERVE_SIZE));
+  }
+
+  public static IdentifierBlockAllocator getInstance() {
+    return Holder.instance;
+  }
+
+  private final Logger log = LogManager.getLogger(getClass());
+  private final int reserveSize;
+  private final ConcurrentHashMap<String, Scope> scopes = new ConcurrentHashMap<>();
+
+  protected IdentifierBlockAllocator(int reserveSize) {
+    this.reserveSize = reserveSize;
+  }
+
+  /**
+   * @param scope scope id
+   * @param blockSize number of consecutive identifiers needed, at least 1
+   * @return the last identifier of the block, i.e. the block is [result - blockSize + 1, result]
+   * @throws Exception
+   */
+  public long getNextIdentifier(String scope, int blockSize) throws Exception {
+    if( reserveSize <= 1 || blockSize >= reserveSize )
+      return reserve(scope, blockSize);
+
+    Scope s = scopes.computeIfAbsent(scope, k -> new Scope());
+    while( true ) {
+      Block block = s.block;
+      long last = block.take(blockSize);
+      if( last >= 0 )
+        return last;
+
+      // Block exhausted, the first one to notice reserves the next one. The rest of the old block is not used
+      synchronized( s ) {
+        if( s.block == block ) {
+          long max = reserve(scope, reserveSize);
+          s.block = new Block(max - reserveSize + 1, max);
+          log.debug("reserved identifiers for scope {} up to {}", scope, max);
+        }
+      }
+    }
+  }
+
+  /**
+   * Increases lastid_ of the scope in bcd_identifier by blockSize in its own transaction, creating the scope if needed
+   * @return the new lastid_
+   */
+  protected long reserve(String scope, int blockSize) throws Exception {
+    Connection con = Configuration.getInstance().getUnmanagedConnection(Bindings.getInstance().get("bcd_identifier", Collections.emptyList()).getJdbcResourceName());
+    try {
+      final SQLEngine e = new SQLEngine();
+      BigDecimal nextId;
+
+      con.setAutoCommit(false);
+
+      Throwable lastInsertException = null;
+      // @formatter:off
+      while(true){
+        int updatedRows = new QueryRunner(true).update(con,e.transform("#set($b = $bindings.bcd_identifier)UPDATE $b.plainTableName SET $b.lastid_ = $b.lastid_ + "+ blockSize +" WHERE $b.scope_ = ?"), scope);
+        if(updatedRows > 0){
+          // ID counted, retrieve it
+          nextId = new QueryRunner(true).query(con, e.transform("#set($b = $bindings.bcd_identifier)SELECT $b.lastid_ FROM $b.plainTableName WHERE $b.scope_ = ?"), new ScalarHandler<BigDecimal>(1),scope);
+          break;
+        }else if(lastInsertException == null){
+          // no updates as there is no such scope, create it
+          log.debug("create non existent scope: {}, blockSize: {} ", scope, blockSize);
+          nextId = new BigDecimal("0").add(new BigDecimal(blockSize));
+          try {
+            new QueryRunner(true).update(con, e.transform("#set($b = $bindings.bcd_identifier)INSERT INTO $b.plainTableName ($b.scope_, $b.lastid_) VALUES (?,?)"), scope, nextId);
+            break;
+          } catch (Exception uniqueViolationException) {
+            // we expect actually the unique key violation exception
+            lastInsertException = uniqueViolationException;
+          }
+        } else {
+          throw new RuntimeException("unexpected exception occurred", lastInsertException);
+        }
+      }
+      // @formatter:on
+      con.commit();
+      return nextId.longValueExact();
+    } finally {
+      Closer.closeAllSQLObjects(con);
+    }
+  }
+
+  /**
+   * Currently reserved identifiers of a scope
+   */
+  private static final class Scope {
+    volatile Block block = new Block(1, 0);
+  }
+
+  /**
+   * A range of reserved identifiers, handed out by moving next forward
+   */
+  private static final class Block {
+    final long max;
+    final AtomicLong next;
+    Block(long first, long max) {
+      this.max = max;
+      this.next = new AtomicLong(first);
+    }
+    /**
+     * @return the last of blockSize identifiers taken or -1 if the block does not have enough left
+     */
+    long take(int blockSize) {
+      long last = next.getAndAdd(blockSize) + blockSize - 1;
+      return last <= max ? last : -1;
+    }
+  }
+}
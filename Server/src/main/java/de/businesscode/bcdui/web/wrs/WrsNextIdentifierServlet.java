@@ -16,19 +16,11 @@
 package de.businesscode.bcdui.web.wrs;
 
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.sql.Connection;
 
-import org.apache.commons.dbutils.QueryRunner;
-import org.apache.commons.dbutils.handlers.ScalarHandler;
 import org.apache.commons.text.StringEscapeUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import de.businesscode.bcdui.binding.Bindings;
-import de.businesscode.bcdui.toolbox.Configuration;
-import de.businesscode.sqlengine.SQLEngine;
-import de.businesscode.util.jdbc.Closer;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
@@ -36,6 +28,7 @@ import jakarta.servlet.http.HttpServletResponse;
 /**
  * provides next identifier - table based id generator,
  * binding-set: bcd_identifier
+ * Identifiers are reserved in blocks, see {@link IdentifierBlockAllocator}
  *
  */
 public class WrsNextIdentifierServlet extends HttpServlet {
@@ -102,42 +95,6 @@ public class WrsNextIdentifierServlet extends HttpServlet {
   public static String getNextIdentifier(Logger log, String scope, int blockSize) throws Exception {
     blockSize = blockSize < 1 ? 1 : blockSize;
     log.trace("retrieve identifier for scope " + scope + ", blockSize: " + blockSize);
-
-    Connection con = Configuration.getInstance().getUnmanagedConnection(Bindings.getInstance().get("bcd_identifier").getJdbcResourceName());
-    try {
-      final SQLEngine e = new SQLEngine();
-      BigDecimal nextId;
-
-      con.setAutoCommit(false);
-
-      Throwable lastInsertException = null;
-      // @formatter:off
-      while(true){
-        int updatedRows = new QueryRunner(true).update(con,e.transform("#set($b = $bindings.bcd_identifier)UPDATE $b.plainTableName SET $b.lastid_ = $b.lastid_ + "+ blockSize +" WHERE $b.scope_ = ?"), scope);
-        if(updatedRows > 0){
-          // ID counted, retrieve it
-          nextId = new QueryRunner(true).query(con, e.transform("#set($b = $bindings.bcd_identifier)SELECT $b.lastid_ FROM $b.plainTableName WHERE $b.scope_ = ?"), new ScalarHandler<BigDecimal>(1),scope);
-          break;
-        }else if(lastInsertException == null){
-          // no updates as there is no such scope, create it
-          log.debug("create non existent scope: {}, blockSize: {} ", scope, blockSize);
-          nextId = new BigDecimal("0").add(new BigDecimal(blockSize));
-          try {
-            new QueryRunner(true).update(con, e.transform("#set($b = $bindings.bcd_identifier)INSERT INTO $b.plainTableName ($b.scope_, $b.lastid_) VALUES (?,?)"), scope, nextId);
-            break;
-          } catch (Exception uniqueViolationException) {
-            // we expect actually the unique key violation exception
-            lastInsertException = uniqueViolationException;
-          }
-        } else {
-          throw new RuntimeException("unexpected exception occurred", lastInsertException);
-        }
-      }
-      // @formatter:on
-      con.commit();
-      return nextId.toString();
-    } finally {
-      Closer.closeAllSQLObjects(con);
-    }
+    return Long.toString(IdentifierBlockAllocator.getInstance().getNextIdentifier(scope, blockSize));
   }
 }
@@ -42,6 +42,8 @@ import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.util.AreaReference;
 import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFTable;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTTable;
@@ -64,6 +66,11 @@ abstract public class AbstractExcelSheetDataWriter
 
   protected int currentColIdx = 0, currentRowIdx = 0;
   protected Sheet sheet = null;
+
+  // In streaming mode, rows given by the template remain in the XSSF part of the sheet, the others are written to the row window
+  private XSSFSheet templateSheet = null;
+  private int templateLastRowIdx = -1;
+  private int lastRowIdx = -1, lastColIdx = -1;
   protected List<Map<String, String>> wrsHeaderCols = new LinkedList<Map<String, String>>();
   protected Vector<Integer> colTypes = new Vector<>();
 
@@ -104,18 +111,32 @@ abstract public class AbstractExcelSheetDataWriter
       workbook.createSheet(sheetName);
     sheet = workbook.getSheet(sheetName);
     sheet.setForceFormulaRecalculation(true);
+    if( workbook instanceof SXSSFWorkbook ) {
+      templateSheet = ((SXSSFWorkbook)workbook).getXSSFWorkbook().getSheet(sheetName);
+      templateLastRowIdx = templateSheet.getPhysicalNumberOfRows() > 0 ? templateSheet.getLastRowNum() : -1;
+      // Another Wrs may have already written to this sheet, its flushed rows cannot be written again
+      int lastFlushedRowIdx = ((SXSSFSheet)sheet).getLastFlushedRowNum();
+      if( lastFlushedRowIdx >= startRowIdx )
+        throw new ExcelWriterException("Cannot write to sheet '" + sheetName + "' at row " + (startRowIdx + 1) + ", rows up to " + (lastFlushedRowIdx + 1)
+            + " are already flushed. Set " + Wrs2Excel.PARAM_STREAMING_ROW_WINDOW + " to 0 for exports sharing a sheet.");
+    }
     resetRowColCursor();
   }
 
   /**
+   * In streaming mode only rows within the row window or given by the template can be accessed,
+   * i.e. rows need to be written top-down
    * @return existing or created Cell at row / col
    * @throws ExcelWriterException 
    */
   protected Cell getCellAt( int row, int col ) {
-    Row currentRow = sheet.getRow(row);
+    Sheet rowSheet = templateSheet != null && row <= templateLastRowIdx ? templateSheet : sheet;
+    Row currentRow = rowSheet.getRow(row);
     if (currentRow == null) {
-      currentRow = sheet.createRow(row);
+      currentRow = rowSheet.createRow(row);
     }
+    lastRowIdx = Math.max(lastRowIdx, row);
+    lastColIdx = Math.max(lastColIdx, col);
 
     Cell cell = currentRow.getCell(col);
     if (cell == null) {
@@ -351,7 +372,7 @@ abstract public class AbstractExcelSheetDataWriter
    * Tasks to be done after the data is inserted
    */
   protected void cleanup() {
-    XSSFSheet xssfSheet = (XSSFSheet) sheet;
+    XSSFSheet xssfSheet = templateSheet != null ? templateSheet : (XSSFSheet) sheet;
     List<XSSFTable> tables = xssfSheet.getTables();
     if (tables == null || tables.size() != 1)
       return;
@@ -378,7 +399,15 @@ abstract public class AbstractExcelSheetDataWriter
     if (cellRef.getCol() == cellRef.getRow() && cellRef.getRow() == 0) {
       XSSFSheet sheet = table.getXSSFSheet();
       // get sheets last row+col, the last col is derived from assumed header
-      String areaReference = new AreaReference(new CellReference(0, 0), new CellReference(sheet.getLastRowNum(), sheet.getRow(0).getLastCellNum() - 1), SpreadsheetVersion.EXCEL2007).formatAsString();
+      // In streaming mode, flushed rows are no longer accessible, so we rely on the template and on what was written to the sheet, also by previous writers
+      int lastRow = sheet.getLastRowNum();
+      if( templateSheet != null ) {
+        SXSSFSheet streamingSheet = (SXSSFSheet)this.sheet;
+        lastRow = Math.max(Math.max(templateLastRowIdx, lastRowIdx), Math.max(streamingSheet.getLastRowNum(), streamingSheet.getLastFlushedRowNum()));
+      }
+      Row headerRow = sheet.getRow(0);
+      int lastCol = headerRow != null ? headerRow.getLastCellNum() - 1 : lastColIdx;
+      String areaReference = new AreaReference(new CellReference(0, 0), new CellReference(lastRow, lastCol), SpreadsheetVersion.EXCEL2007).formatAsString();
       log.trace("found table in sheet '" + sheet.getSheetName() + "', align its range to " + areaReference);
       sheet.getCTWorksheet().getDimension().setRef(areaReference);
       CTTable ctTable = table.getCTTable();
@@ -17,9 +17,6 @@
 package de.businesscode.bcdui.wrs.export;
 
 import java.awt.Color;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -35,7 +32,6 @@ import javax.xml.stream.events.StartElement;
 import javax.xml.stream.events.XMLEvent;
 
 import de.businesscode.util.xml.SecureXmlFactory;
-import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.poi.EncryptedDocumentException;
@@ -45,10 +41,12 @@ import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFColor;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbookType;
+import de.businesscode.bcdui.toolbox.config.BareConfiguration;
 import de.businesscode.bcdui.web.wrs.WrsAccessLogEvent;
 import de.businesscode.bcdui.wrs.IRequestOptions;
 
@@ -56,10 +54,19 @@ import de.businesscode.bcdui.wrs.IRequestOptions;
  * Wrs to Excel (.xlsx) data exporter: exports data from Wrs into sheet(s) of target excel template, uses efficient streaming API when interfacing with input
  * document and output. Due to streaming API the input Wrs document must strictly adhere to Wrs schema.
  * BUI-537
+ * If {@link #PARAM_STREAMING_ROW_WINDOW} is set to a value above 0, the sheets are written via Poi's SXSSF, keeping only a window of rows in memory,
+ * the others are flushed to a temp file. Rows given by a template stay accessible, data is appended below them in a streaming manner.
+ * As flushed rows cannot be written again, this is only suitable for exports writing each sheet top-down, i.e. not for several Wrs sharing a sheet.
  *
  */
 public class Wrs2Excel {
 
+  /**
+   * Number of rows per sheet kept in memory, older ones are flushed to a temp file. 0 or less, the default, keeps the full workbook in memory
+   */
+  public static final String PARAM_STREAMING_ROW_WINDOW = "bcdui/export/excel/streamingRowWindow";
+  public static final int DEFAULT_STREAMING_ROW_WINDOW = 0;
+
   private boolean usingTemplate = false;
   
   /**
@@ -156,10 +163,13 @@ public class Wrs2Excel {
         Sheet sheet = workbook.createSheet(sheetName);
         int active = workbook.getActiveSheetIndex();
         workbook.setSheetOrder(sheetName, active+1);
-        if( sheet instanceof XSSFSheet ) {
-          XSSFSheet xssfSheet = (XSSFSheet)sheet;
+        XSSFSheet xssfSheet = null;
+        if( sheet instanceof XSSFSheet )
+          xssfSheet = (XSSFSheet)sheet;
+        else if( workbook instanceof SXSSFWorkbook )
+          xssfSheet = ((SXSSFWorkbook)workbook).getXSSFWorkbook().getSheet(sheetName);
+        if( xssfSheet != null )
           xssfSheet.setTabColor(new XSSFColor(java.awt.Color.RED, null));
-        }
         Row row = sheet.createRow(0); 
         Cell cell = row.createCell(0);
         cell.setCellValue("Not all rows were exported due to the configured row limit of "+options.getMaxRows()+".");
@@ -271,35 +281,34 @@ public class Wrs2Excel {
       throw new ExcelWriterException("Another Workbook is still open.");
     }
     try {
-      // needs abstract file abstraction, let Java manage the filename
-      File tempFile = File.createTempFile("wrs2excel", ".xlsx");
-      tempFile.deleteOnExit();
-      // create shadow file
-
-      // We may have a template, which we copy or just create a new, blank file
+      // We may have a template, which we read or just create a new, blank workbook
       if( excelTemplateName != null && !excelTemplateName.isEmpty() ) {
         usingTemplate = true;
-        InputStream excelTemplateInputStream = templateResolver.getInputStream(excelTemplateName);
-        FileUtils.copyInputStreamToFile(excelTemplateInputStream, tempFile);
-        excelTemplateInputStream.close();
+        try( InputStream excelTemplateInputStream = templateResolver.getInputStream(excelTemplateName) ) {
+          log.trace("opening workbook");
+          workbook = WorkbookFactory.create(excelTemplateInputStream);
+        }
       } else {
-        Workbook wb = new XSSFWorkbook(XSSFWorkbookType.XLSX);
-        wb.write(new FileOutputStream(tempFile));
-        wb.close();
+        workbook = new XSSFWorkbook(XSSFWorkbookType.XLSX);
       }
-
-      // open workbook
-      log.trace("opening workbook");
-      workbook = WorkbookFactory.create(new FileInputStream(tempFile));
     } catch (EncryptedDocumentException | IOException e) {
       throw new ExcelWriterException("failed to open workbook", e);
     }
-    this.workbook.setForceFormulaRecalculation(true);
     if( workbook instanceof XSSFWorkbook ) {
-      POIXMLProperties xmlProps = ((XSSFWorkbook)workbook).getProperties();    
+      XSSFWorkbook xssfWorkbook = (XSSFWorkbook)workbook;
+      POIXMLProperties xmlProps = xssfWorkbook.getProperties();
       POIXMLProperties.CoreProperties coreProps =  xmlProps.getCoreProperties();
       coreProps.setCreator("BCD-UI");
+
+      // Stream the rows, keeping only the last rowWindow rows of each sheet in memory
+      int rowWindow = BareConfiguration.getInstance().getConfigurationParameter(PARAM_STREAMING_ROW_WINDOW, DEFAULT_STREAMING_ROW_WINDOW);
+      if( rowWindow > 0 ) {
+        SXSSFWorkbook sxssfWorkbook = new SXSSFWorkbook(xssfWorkbook, rowWindow);
+        sxssfWorkbook.setCompressTempFiles(true);
+        workbook = sxssfWorkbook;
+      }
     }
+    this.workbook.setForceFormulaRecalculation(true);
   }
 
 
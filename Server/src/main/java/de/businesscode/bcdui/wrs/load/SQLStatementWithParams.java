@@ -99,6 +99,21 @@ public class SQLStatementWithParams {
     return this;
   }
 
+  /**
+   * Adds a single bound variable with its already resolved value and BindingItem, used when rebinding a cached statement
+   * @param filterItem
+   * @param filterValue
+   * @param filterBindingItem
+   * @return
+   */
+  public SQLStatementWithParams appendBoundVariable(Element filterItem, String filterValue, BindingItem filterBindingItem)
+  {
+    filterItems.add(filterItem);
+    filterValues.add(filterValue);
+    filterBindingItems.add(filterBindingItem);
+    return this;
+  }
+
   public String getStatement() {
     return statement.toString();
   }
@@ -19,13 +19,17 @@ import de.businesscode.bcdui.binding.BindingItem;
 import de.businesscode.bcdui.binding.StandardBindingSet;
 import de.businesscode.bcdui.binding.exc.BindingException;
 import de.businesscode.bcdui.binding.exc.BindingNotFoundException;
+import de.businesscode.bcdui.binding.write.CustomJdbcTypeSupport;
 import de.businesscode.bcdui.toolbox.Configuration;
+import de.businesscode.util.StandardNamespaceContext;
 import de.businesscode.util.jdbc.DatabaseCompatibility;
 
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.subject.Subject;
 import org.apache.shiro.web.util.WebUtils;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 import javax.xml.xpath.XPathExpressionException;
 
@@ -46,6 +50,7 @@ public class SqlFromSubSelect
   protected final WrqInfo wrqInfo;
   protected int rowStart = 0;
   protected int rowEnd   = -1;                          // -1 means unlimited
+  protected boolean isSeek = false;                     // Keyset pagination, rows before rowStart are skipped via WHERE, not via OFFSET
   /** All Standard BindingSets, which we or any of our sub-selects are using */
   protected Set<StandardBindingSet> resolvedBindingSets = new HashSet<>();
   /** A virtual BindingSet representing the result set created by this sub-select */
@@ -219,9 +224,102 @@ public class SqlFromSubSelect
     if( ! subjectSettingsClause.isEmpty() )
       sql.append(" ( "+subjectSettingsClause+" )");
 
+    // Keyset pagination, continue after the last row the client has
+    String seekClause = generateSeekClause( wrqInfo, boundVariables );
+    if( ! seekClause.isEmpty() )
+      sql.append( sql.length() == 0 ? " WHERE " : " AND " ).append("( "+seekClause+" )");
+
     sqlStatement.append(sql.toString(), boundVariables, wrqInfo.getResultingBindingSet());
   }
 
+  /**
+   * Keyset pagination: If each wrq:Ordering/wrq:C has a @seekValue, being the value of the last row of the previous page,
+   * we select the rows following that row via a condition instead of skipping rowStart-1 rows with OFFSET, which gets slower with each page.
+   * This requires the ordering to be unique, i.e. to contain all key BindingItems of the BindingSet or all grouping columns.
+   * Otherwise, or if a @seekValue is empty (a null value), we fall back to OFFSET.
+   * @return the condition or an empty string
+   * @throws BindingNotFoundException
+   */
+  protected String generateSeekClause( WrqInfo wrqInfo, List<Element> boundVariables ) throws BindingNotFoundException
+  {
+    Element ordering = null;
+    for( Node n = selectElem.getFirstChild(); n != null; n = n.getNextSibling() ) {
+      if( n.getNodeType() == Node.ELEMENT_NODE && "Ordering".equals(n.getLocalName()) && StandardNamespaceContext.WRSREQUEST_NAMESPACE.equals(n.getNamespaceURI()) )
+        ordering = (Element)n;
+    }
+    if( ordering == null )
+      return "";
+
+    List<WrqBindingItem> items = new ArrayList<>();
+    List<String> seekValues = new ArrayList<>();
+    boolean hasSeekValue = false;
+    for( Node n = ordering.getFirstChild(); n != null; n = n.getNextSibling() ) {
+      if( n.getNodeType() != Node.ELEMENT_NODE )
+        continue;
+      Element c = (Element)n;
+      hasSeekValue |= c.hasAttribute("seekValue");
+      WrqBindingItem item = "C".equals(c.getLocalName()) && c.getElementsByTagNameNS(StandardNamespaceContext.WRSREQUEST_NAMESPACE, "Calc").getLength() == 0
+          ? wrqInfo.getAllBRefAggrs().get(c.getAttribute("bRef")) : null;
+      items.add( item != null && item.getAggr() == null ? item : null );
+      seekValues.add(c.getAttribute("seekValue"));
+    }
+    if( ! hasSeekValue || items.contains(null) || seekValues.contains("") || ! isUniqueOrdering(wrqInfo, items) )
+      return "";
+
+    // For ORDER BY a ASC, b DESC, having nulls last, this is
+    // (a > ? OR a IS NULL) OR (a = ? AND (b < ? OR b IS NULL))
+    StringBuilder sql = new StringBuilder();
+    Document doc = selectElem.getOwnerDocument();
+    for( int i = 0; i < items.size(); i++ ) {
+      sql.append(i > 0 ? " OR (" : "(");
+      for( int j = 0; j <= i; j++ ) {
+        WrqBindingItem item = items.get(j);
+        String colExpr = item.getQColumnExpression();
+        Element valueElem = doc.createElement("SeekValue");
+        valueElem.setAttribute("bRef", item.getId());
+        valueElem.setAttribute("value", seekValues.get(j));
+        boundVariables.addAll( item.getBoundVariables() );
+        boundVariables.add( valueElem );
+        if( j < i ) {
+          sql.append(colExpr).append(" = ").append(CustomJdbcTypeSupport.wrapTypeCast(item, "?")).append(" AND ");
+        } else {
+          sql.append("(").append(colExpr).append(item.isOrderByDescending() ? " < " : " > ").append(CustomJdbcTypeSupport.wrapTypeCast(item, "?"));
+          sql.append(" OR ").append(colExpr).append(" IS NULL)");
+          boundVariables.addAll( item.getBoundVariables() );
+        }
+      }
+      sql.append(")");
+    }
+
+    isSeek = true;
+    return sql.toString();
+  }
+
+  /**
+   * Ordering is unique if it contains all grouping columns or, for a plain select from a single BindingSet, all its key BindingItems
+   */
+  protected boolean isUniqueOrdering( WrqInfo wrqInfo, List<WrqBindingItem> items )
+  {
+    Set<String> orderingIds = new HashSet<>();
+    for( WrqBindingItem item : items )
+      orderingIds.add(item.getId());
+
+    if( wrqInfo.reqHasGroupBy() )
+      return ! wrqInfo.reqHasGroupingFunction() && orderingIds.containsAll(wrqInfo.getGroupingBRefs());
+
+    WrqBindingSet bs = wrqInfo.getResultingBindingSet();
+    if( ! (bs instanceof WrqBindingSetFromTableReference) || bs.getResolvedBindingSets().size() != 1 )
+      return false;
+    BindingItem[] keys = bs.getResolvedBindingSets().iterator().next().getKeyBindingItems();
+    if( keys.length == 0 )
+      return false;
+    for( BindingItem key : keys ) {
+      if( ! orderingIds.contains(key.getId()) )
+        return false;
+    }
+    return true;
+  }
+
 
   /**
    * Generates Grouping clause
@@ -311,7 +409,12 @@ public class SqlFromSubSelect
         return sqlSWP.getStatement();
     };
     DatabaseCompatibility dbCompat = DatabaseCompatibility.getInstance();
-    sqlStatement.append( dbCompat.paginationClause(wrqQueryBuilder.getJdbcResourceName(), rowStart, rowEnd, getOrderClause ) );
+    if( isSeek ) {
+      // Preceding rows are already excluded by the seek condition, we only limit the page size
+      int fetch = rowEnd < 0 ? -1 : (rowStart > 0 ? rowEnd - rowStart + 1 : rowEnd);
+      sqlStatement.append( dbCompat.paginationClause(wrqQueryBuilder.getJdbcResourceName(), 0, fetch, getOrderClause ) );
+    } else
+      sqlStatement.append( dbCompat.paginationClause(wrqQueryBuilder.getJdbcResourceName(), rowStart, rowEnd, getOrderClause ) );
   }
 
   public List<Element> getBoundVariables() {
@@ -0,0 +1,94 @@
+/*
+  Copyright 2010-2026 BusinessCode GmbH, Germany
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.businesscode.bcdui.wrs.load;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.shiro.subject.Subject;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import de.businesscode.bcdui.binding.BindingSet;
+import de.businesscode.bcdui.subjectsettings.SecurityHelper;
+
+/**
+ * Per session cache of what is derived from the subject's permissions during SQL generation:
+ * the SubjectFilter conditions per BindingSet together with their bound values and the subject signature of {@link WrqPlanCache}.
+ * It is kept via {@link SecurityHelper#getAuthorizationScoped(Subject, Class, java.util.function.Function)}, i.e. it is only used if all
+ * AuthorizingRealms cache their AuthorizationInfo and it is dropped as soon as the subject's permissions change.
+ */
+class SubjectConditionCache {
+
+  private final Map<String, Condition> conditions = new ConcurrentHashMap<>();
+  volatile String subjectSignature;
+
+  /**
+   * @param subject
+   * @return the cache of the subject's session or null if the subject's permissions cannot be cached
+   */
+  static SubjectConditionCache get(Subject subject) {
+    return SecurityHelper.getAuthorizationScoped(subject, SubjectConditionCache.class, infos -> new SubjectConditionCache());
+  }
+
+  /**
+   * @param key
+   * @param bindingSet the condition must have been created for this instance, which changes when Bindings are reloaded
+   * @return the cached condition or null
+   */
+  Condition getCondition(String key, BindingSet bindingSet) {
+    Condition condition = conditions.get(key);
+    return condition != null && condition.bindingSet == bindingSet ? condition : null;
+  }
+
+  void putCondition(String key, BindingSet bindingSet, String sql, List<Element> boundVariables) {
+    conditions.put(key, new Condition(bindingSet, sql, boundVariables));
+  }
+
+  /**
+   * A SubjectFilter condition with the bRef and value of its bound variables
+   */
+  static final class Condition {
+    private final BindingSet bindingSet;
+    final String sql;
+    private final String[] bRefs;
+    private final String[] values;
+
+    private Condition(BindingSet bindingSet, String sql, List<Element> boundVariables) {
+      this.bindingSet = bindingSet;
+      this.sql = sql;
+      bRefs = new String[boundVariables.size()];
+      values = new String[boundVariables.size()];
+      for( int i = 0; i < bRefs.length; i++ ) {
+        bRefs[i] = boundVariables.get(i).getAttribute("bRef");
+        values[i] = boundVariables.get(i).getAttribute("value");
+      }
+    }
+
+    /**
+     * Appends our bound variables, created in the given document
+     */
+    void appendBoundVariables(Document doc, List<Element> boundVariables) {
+      for( int i = 0; i < bRefs.length; i++ ) {
+        Element e = doc.createElement("SubjectSettings");
+        e.setAttribute("value", values[i]);
+        e.setAttribute("bRef", bRefs[i]);
+        boundVariables.add(e);
+      }
+    }
+  }
+}
@@ -81,19 +81,36 @@ public class SubjectSettings2Sql implements SqlConditionGenerator {
       return "";
     }
 
+    Subject subject = SecurityUtils.getSubject();
+
+    // The condition only depends on the subject's permissions, unless we are extended
+    SubjectConditionCache cache = getClass() == SubjectSettings2Sql.class ? SubjectConditionCache.get(subject) : null;
+    String cacheKey = bindingSet.getName() + "|" + sqlAlias;
+    if (cache != null) {
+      SubjectConditionCache.Condition cached = cache.getCondition(cacheKey, bindingSet);
+      if (cached != null) {
+        cached.appendBoundVariables(wrqInfo.getOwnerDocument(), boundVariables);
+        return cached.sql;
+      }
+    }
+
     final StringBuilder whereClause = new StringBuilder();
+    final int firstBoundVariable = boundVariables.size();
 
     StringBuilder loggingSb = logger.isTraceEnabled() ? new StringBuilder() : null;
 
     // Loop over the SubjectFilters of the BindingSet
-    boolean hasAccess = build(whereClause, bindingSet.getSubjectFilters().getConnective(), boundVariables, SubjectSettings.getInstance(), SecurityUtils.getSubject(), loggingSb, 0);
+    boolean hasAccess = build(whereClause, bindingSet.getSubjectFilters().getConnective(), boundVariables, SubjectSettings.getInstance(), subject, loggingSb, 0);
 
     if (loggingSb != null) {
       logger.trace("(see next line)\n" + loggingSb);
     }
 
     // in case of no access, 1=0 is returned
-    return hasAccess ? whereClause.toString() : " 1=0 ";
+    String condition = hasAccess ? whereClause.toString() : " 1=0 ";
+    if (cache != null)
+      cache.putCondition(cacheKey, bindingSet, condition, boundVariables.subList(firstBoundVariable, boundVariables.size()));
+    return condition;
   }
 
   /**
@@ -297,23 +314,28 @@ public class SubjectSettings2Sql implements SqlConditionGenerator {
       // for subjectPreferences (which never come from the DB), we also use in/or
       if (permissions.size() <= THRESHOLD_PERMS_COUNT_INLINE || SubjectPreferences.isAllowedAttribute(ft.getName())) {
 
+        // Per convention in BCD-UI LIKE: operator * means SQL %
+        List<String> perms = ft.getOp().equals("like") ?
+            permissions.stream().map(p1 -> p1.replace('*', '%')).collect(Collectors.toList()) : permissions.stream().collect(Collectors.toList());
+        // Padding with the last value keeps the number of distinct statements low, see WrqFilter2Sql.getInListBucketSize()
+        for( int pIdx = perms.size(), bucketSize = WrqFilter2Sql.getInListBucketSize(perms.size()); pIdx < bucketSize; pIdx++ )
+          perms.add(perms.get(perms.size()-1));
+
         // One expression for all values for "IN" and a single "="
         if( ft.getOp().contains("in")
             || ( (ft.getOp()==null || ft.getOp().equals("=")) && permissions.size()>1) ) {
-          subjectSettingsClause.append(columnExpression).append(" in (").append( permissions.stream().map(p2 -> CustomJdbcTypeSupport.wrapTypeCast(bi, "?")).collect(Collectors.joining(",")) ).append(")");
+          subjectSettingsClause.append(columnExpression).append(" in (").append( perms.stream().map(p2 -> CustomJdbcTypeSupport.wrapTypeCast(bi, "?")).collect(Collectors.joining(",")) ).append(")");
         }
         // List of OR-ed expressions
         else {
           String sqlOp = ft.getOp()==null ? "=" : WrqFilter2Sql.getOperatorMapping(ft.getOp());
-          for( int pIdx=0; pIdx<permissions.size(); pIdx++) {
+          for( int pIdx=0; pIdx<perms.size(); pIdx++) {
             if( pIdx > 0 ) subjectSettingsClause.append(" OR ");
             subjectSettingsClause.append(columnExpression).append(" ").append(sqlOp).append(" ").append(CustomJdbcTypeSupport.wrapTypeCast(bi, "?"));
           }
         }
 
-        // Append the parameters. Per convention in BCD-UI LIKE: operator * means SQL %
-        List<String> perms = ft.getOp().equals("like") ?
-            permissions.stream().map(p1 -> p1.replace('*', '%')).collect(Collectors.toList()) : permissions.stream().collect(Collectors.toList());
+        // Append the parameters
         writeParams(bi.getId(), perms, boundVariables);
       }
 
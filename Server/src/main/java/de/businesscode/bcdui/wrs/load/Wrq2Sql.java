@@ -25,6 +25,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.dom.DOMResult;
 import javax.xml.transform.dom.DOMSource;
@@ -59,14 +60,18 @@ public class Wrq2Sql implements ISqlGenerator
   protected int clientProvidedMaxRows = Integer.MAX_VALUE;
   protected WrqQueryBuilder wrqQueryBuilder;
   protected final Document requestDoc;
+  protected WrqPlanCache.Plan cachedPlan;     // Set instead of wrqQueryBuilder, if we found a WrqPlanCache entry for the request's shape
+  protected SQLStatementWithParams cachedPlanStatement;
   
-  // Stylesheet for Grouping Set conversion
+  // Stylesheet for Grouping Set conversion, compiled once. Templates are thread-safe, only the Transformer is per request
   protected static String wrqTransformGrs2UnionXsltStatic;
+  protected static Templates wrqTransformGrs2UnionTemplates;
   static {
     try {
       wrqTransformGrs2UnionXsltStatic = IOUtils.toString(Wrq2Sql.class.getResourceAsStream("wrqTransformGrs2Union.xslt"), "UTF-8");
+      wrqTransformGrs2UnionTemplates = SecureXmlFactory.newTransformerFactory().newTemplates(new StreamSource(new StringReader(wrqTransformGrs2UnionXsltStatic)));
     } catch (Throwable e) {
-      LogManager.getLogger(Wrq2Sql.class).fatal("wrqTransformGrs2Union.xslt not found");
+      LogManager.getLogger(Wrq2Sql.class).fatal("wrqTransformGrs2Union.xslt not found or not valid", e);
     }
   }
   
@@ -105,7 +110,51 @@ public class Wrq2Sql implements ISqlGenerator
       effectiveMaxRows = Math.min( rowEnd, options.getMaxRows() );  // We can ignore rowStart as it is <= 1
     }
 
-    // This is modifying the Wrq when it uses Grouping SETs but they are not supported by the current database
+    // Structurally identical requests share the SQL, only the filter values are bound newly
+    // We look up the plan before applying the GROUPING SET workaround, so that a hit also saves the transformation
+    WrqPlanCache planCache = WrqPlanCache.getInstance();
+    WrqPlanCache.Shape shape = planCache.isEnabled() ? planCache.getShape(requestDoc, bindings, effectiveMaxRows) : null;
+    if( shape != null ) {
+      WrqPlanCache.Plan plan = planCache.get(shape, bindings);
+      if( plan == null )
+        plan = planCache.put(shape, bindings, new WrqQueryBuilder(this, bindings, applyGroupingSetsWorkaround(shape.createProbe()).getDocumentElement()));
+      if( plan.isCacheable() ) {
+        cachedPlan = plan;
+        cachedPlanStatement = plan.bind(shape);
+      }
+    }
+    if( cachedPlan == null ) {
+      requestDoc = applyGroupingSetsWorkaround(requestDoc);
+      wrqQueryBuilder = new WrqQueryBuilder(this, bindings, requestDoc.getDocumentElement());
+    }
+    
+    // Are we allowed to read all used BindingSets? Will throw otherwise
+    Subject subject = null;
+    try { subject = SecurityUtils.getSubject(); } catch (Exception e) {/* no shiro at all */}
+    if (subject != null) {
+      if (WebUtils.isHttp(subject)) {
+        if( cachedPlan != null ) {
+          for( StandardBindingSet bs: cachedPlan.getResolvedBindingSets() ) bs.assurePermitted(SECURITY_OPS.read);
+        } else
+          wrqQueryBuilder.assurePermittedOnAllResolvedBindingSets(SECURITY_OPS.read);
+      }
+      else {
+        NodeList bindingSets = requestDoc.getDocumentElement().getElementsByTagNameNS(StandardNamespaceContext.WRSREQUEST_NAMESPACE, "BindingSet");
+        for (int i = 0; i < bindingSets.getLength(); i++) {
+          BindingSet bs = bindings.get(bindingSets.item(i).getFirstChild().getTextContent().trim(), Collections.emptySet());
+          if (!bs.isBackendCanBypassSubjectFilter() )
+            throw new BindingException("The BindingSet " + bs.getName() +" can't bypass SubjectFilters. Consider using bnd:BindingSet/sec:SubjectSettings/sec:SubjectFilters/@backendCanBypassSubjectFilter");
+        }
+      }
+    }
+  }
+
+  /**
+   * This is modifying the Wrq when it uses Grouping SETs but they are not supported by the current database
+   * @param requestDoc
+   * @return the converted Wrq or the requestDoc itself, if no conversion is necessary
+   */
+  protected Document applyGroupingSetsWorkaround(Document requestDoc) {
     try {
       // We need the database source to clarify which database dialect to apply
       // We just take the one from the first non-virtual BindingSet we find
@@ -116,42 +165,24 @@ public class Wrq2Sql implements ISqlGenerator
       // Here we implement a work-around for GROUPING SETs and convert them into GROUP BY with UNION
       // And we convert @rowStart and @rowEnd into a subselect with limit on ROW_NUMBER if @rowStart > 1
       boolean wrqHasGroupingSets = requestDoc.getElementsByTagNameNS(StandardNamespaceContext.WRSREQUEST_NAMESPACE, "GroupingSets").getLength() > 0;
-      boolean dbSupportsGroupingSets = DatabaseCompatibility.getInstance().dbSupportsGroupingSets(jdbcResourceName);
-      if( wrqHasGroupingSets && !dbSupportsGroupingSets ) {
+      if( wrqHasGroupingSets && !DatabaseCompatibility.getInstance().dbSupportsGroupingSets(jdbcResourceName) ) {
         DOMSource source = new DOMSource(requestDoc.getDocumentElement());
-        StreamSource styleSource = new StreamSource(new StringReader(wrqTransformGrs2UnionXsltStatic) );
-        Transformer transformer = SecureXmlFactory.newTransformerFactory().newTransformer(styleSource);
+        Transformer transformer = wrqTransformGrs2UnionTemplates.newTransformer();
         DOMResult result = new DOMResult();
         transformer.transform(source, result);
-        requestDoc = (Document)result.getNode();
+        return (Document)result.getNode();
       }
-
+      return requestDoc;
     } catch(Exception e) {
       throw new RuntimeException("Unable to generate select statement in workaround for missing GROUPING SET support: "+e.getMessage(), e);
     }
-    
-    wrqQueryBuilder = new WrqQueryBuilder(this, bindings, requestDoc.getDocumentElement());
-    
-    // Are we allowed to read all used BindingSets? Will throw otherwise
-    Subject subject = null;
-    try { subject = SecurityUtils.getSubject(); } catch (Exception e) {/* no shiro at all */}
-    if (subject != null) {
-      if (WebUtils.isHttp(subject))
-        wrqQueryBuilder.assurePermittedOnAllResolvedBindingSets(SECURITY_OPS.read);
-      else {
-        NodeList bindingSets = requestDoc.getDocumentElement().getElementsByTagNameNS(StandardNamespaceContext.WRSREQUEST_NAMESPACE, "BindingSet");
-        for (int i = 0; i < bindingSets.getLength(); i++) {
-          BindingSet bs = bindings.get(bindingSets.item(i).getFirstChild().getTextContent().trim(), Collections.emptySet());
-          if (!bs.isBackendCanBypassSubjectFilter() )
-            throw new BindingException("The BindingSet " + bs.getName() +" can't bypass SubjectFilters. Consider using bnd:BindingSet/sec:SubjectSettings/sec:SubjectFilters/@backendCanBypassSubjectFilter");
-        }
-      }
-    }
   }
 
   @Override
   public SQLStatementWithParams getSelectStatement() {
-    if( wrqQueryBuilder != null ) {
+    if( cachedPlan != null ) {
+      return cachedPlanStatement;
+    } else if( wrqQueryBuilder != null ) {
       return wrqQueryBuilder.getSelectStatement();
     } else {
       return null;
@@ -163,6 +194,7 @@ public class Wrq2Sql implements ISqlGenerator
    */
   @Override
   public String getDbSourceName() {
+    if( cachedPlan != null ) return cachedPlan.getJdbcResourceName();
     return wrqQueryBuilder.getJdbcResourceName();
   }
   /**
@@ -179,13 +211,15 @@ public class Wrq2Sql implements ISqlGenerator
   }
   @Override
   public Set<StandardBindingSet> getResolvedBindingSets() {
-    if( wrqQueryBuilder != null ) return wrqQueryBuilder.getResolvedBindingSets();
+    if( cachedPlan != null ) return cachedPlan.getResolvedBindingSets();
+    else if( wrqQueryBuilder != null ) return wrqQueryBuilder.getResolvedBindingSets();
     else return new HashSet<>();
   }
   @Override
   public List<WrsBindingItem> getSelectedBindingItems() throws Exception
   {
-    if( wrqQueryBuilder != null ) return wrqQueryBuilder.getSelectedBindingItems();
+    if( cachedPlan != null ) return cachedPlan.getSelectedBindingItems();
+    else if( wrqQueryBuilder != null ) return wrqQueryBuilder.getSelectedBindingItems();
     else return new LinkedList<>();
   }
   @Override
@@ -265,16 +265,18 @@ public class WrqFilter2Sql
       colExpr = bindingItem.getQColumnExpression(false);
     }
 
-    // IN operator needs a list of ?
+    // IN operator needs a list of ?, padded with the last value to keep the number of distinct statements low
     if( "IN".equals(operator) || "NOT IN".equals(operator) ) {
       String[] values = valueElement.getAttribute("value").split(",");
+      int bucketSize = getInListBucketSize(values.length);
       StringBuffer qm = new StringBuffer("(");
       String pqm = CustomJdbcTypeSupport.wrapTypeCast(bindingItem, "?");
-      for( int i = 0; i<values.length; i++ ) {
-        qm.append( i<values.length-1 ? (pqm + ",") : pqm);
+      for( int i = 0; i<bucketSize; i++ ) {
+        qm.append( i<bucketSize-1 ? (pqm + ",") : pqm);
+        String value = values[Math.min(i, values.length-1)];
         Element e = ownerDocument.createElement("InElement");
         e.setAttribute("bRef",  bindingItem.getId());
-        e.setAttribute("value", ignoreCase ? values[i].toLowerCase() : values[i]);
+        e.setAttribute("value", ignoreCase ? value.toLowerCase() : value);
         boundVariables.add(e);
       }
       return colExpr + " "+operator+" " + qm.toString() + ")";
@@ -321,6 +323,8 @@ public class WrqFilter2Sql
     return colExpr + " " + operator + " " + CustomJdbcTypeSupport.wrapTypeCast(bindingItem, " ?") + colExprPostfix;
   }
 
+  private static final int MAX_IN_LIST_BUCKET_SIZE = 1000;
+
   // The following mappings help preventing SQL injection
   private static final Map<String, String> connectiveMapping;
   private static final Map<String, String> operatorMapping;
@@ -349,5 +353,18 @@ public class WrqFilter2Sql
   public static String getOperatorMapping(String op) {
     return operatorMapping.get(op);
   }
+
+  /**
+   * IN lists are padded to the next power of two, so that lists of similar length share one statement text and the database's statement cache.
+   * Oracle does not allow more than 1000 values, so we never pad beyond that
+   * @param size number of values
+   * @return number of values to bind, at least size
+   */
+  public static int getInListBucketSize(int size) {
+    if( size <= 1 )
+      return size;
+    int bucketSize = Integer.highestOneBit(size - 1) << 1;
+    return bucketSize <= MAX_IN_LIST_BUCKET_SIZE ? bucketSize : Math.max(size, MAX_IN_LIST_BUCKET_SIZE);
+  }
   
 }
@@ -0,0 +1,508 @@
+/*
+  Copyright 2010-2026 BusinessCode GmbH, Germany
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.businesscode.bcdui.wrs.load;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.web.util.WebUtils;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import de.businesscode.bcdui.binding.BindingItem;
+import de.businesscode.bcdui.binding.Bindings;
+import de.businesscode.bcdui.binding.StandardBindingSet;
+import de.businesscode.bcdui.subjectsettings.SecurityHelper;
+import de.businesscode.bcdui.toolbox.Configuration;
+import de.businesscode.bcdui.toolbox.Configuration.OPT_CLASSES;
+import de.businesscode.bcdui.toolbox.config.BareConfiguration;
+import de.businesscode.util.StandardNamespaceContext;
+
+/**
+ * Bounded cache of generated SQL for structurally identical Wrqs.
+ * The key is the "shape" of the request, i.e. the full wrq:WrsRequest with the values of f:Expression/@value and wrq:Ordering/wrq:C/@seekValue left out,
+ * plus the max rows and a signature of the current Subject's rights, because these go into the SubjectFilters.
+ * Requests of unauthenticated subjects on BindingSets with SubjectFilters are not cached, their rights are not captured by the signature.
+ * A plan holds the SQL text and, per bound variable, either a constant or the position of the f:Expression it is taken from.
+ * On a hit, only the values of the current request are bound, the Wrq is not walked again.
+ *
+ * To find out, which bound variable comes from which f:Expression/@value, on a miss we generate the SQL once from a copy of the Wrq,
+ * where these values are replaced by markers. Values which are transformed during SQL generation (LIKE, ignore case)
+ * and Wrqs with Modifiers are not parameterized in this way, they are part of the key or not cached at all.
+ * Entries belong to a Bindings instance and become invalid with a reload of the BindingSets.
+ */
+public class WrqPlanCache
+{
+  public static final String PARAM_MAX_ENTRIES = "bcdui/wrs/planCache/maxEntries";
+  public static final int DEFAULT_MAX_ENTRIES = 500;
+
+  private static final String MARKER = "BcdWrqParam_";
+  private static final Pattern markerPattern = Pattern.compile(MARKER+"(\\d+)(?:x(\\d+))?");
+  private static final Set<String> nonParameterizableOps = new HashSet<>(Arrays.asList("like", "notlike"));
+  private static final Set<String> splitOps = new HashSet<>(Arrays.asList("in", "notin"));
+
+  private static final Logger log = LogManager.getLogger(WrqPlanCache.class);
+
+  private static class Holder {
+    static final WrqPlanCache instance = new WrqPlanCache(BareConfiguration.getInstance().getConfigurationParameter(PARAM_MAX_ENTRIES, DEFAULT_MAX_ENTRIES));
+  }
+
+  public static WrqPlanCache getInstance() {
+    return Holder.instance;
+  }
+
+  private final int maxEntries;
+  private final Map<String, Plan> plans = new ConcurrentHashMap<>();
+  private final AtomicLong accessCounter = new AtomicLong();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder notCacheable = new LongAdder();
+
+  protected WrqPlanCache(int maxEntries) {
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * A maxEntries of 0 or less or a disabled caching in general switches us off
+   * @return
+   */
+  public boolean isEnabled() {
+    return maxEntries > 0 && ! Configuration.isCacheDisabled();
+  }
+
+  /**
+   * Derives the shape of a Wrq
+   * @param requestDoc
+   * @param bindings
+   * @param maxRows
+   * @return null if the request cannot be handled by us
+   * @throws Exception
+   */
+  public Shape getShape(Document requestDoc, Bindings bindings, int maxRows) throws Exception {
+    // Modifiers and custom SubjectFilter implementations may depend on the actual values, we stay away from these
+    if( ! SubjectSettings2Sql.class.equals(Configuration.getClassoption(OPT_CLASSES.SUBJECTSETTINGS2SQL)) )
+      return null;
+    // SubjectFilters of guests depend on session-scoped principals, which are not part of the subject signature
+    boolean isGuest = isGuest();
+    NodeList bsNl = requestDoc.getElementsByTagNameNS(StandardNamespaceContext.WRSREQUEST_NAMESPACE, "BindingSet");
+    for( int b=0; b<bsNl.getLength(); b++ ) {
+      String bindingSetName = bsNl.item(b).getTextContent().trim();
+      if( ! bindings.getWrqModifiers(bindingSetName).isEmpty() )
+        return null;
+      if( isGuest && hasSubjectFilters(bindings, bindingSetName) )
+        return null;
+    }
+
+    Shape shape = new Shape(requestDoc);
+    try {
+      shape.key.append(maxRows).append('|').append(getSubjectSignature()).append('|');
+    } catch (Exception e) {
+      log.debug("Unable to determine subject signature, not using plan cache", e);
+      return null;
+    }
+    shape.collect(requestDoc.getDocumentElement());
+    return shape;
+  }
+
+  /**
+   * Returns the plan for the shape, if it is known and was created for the given Bindings instance
+   * @param shape
+   * @param bindings
+   * @return null if this is a miss
+   */
+  public Plan get(Shape shape, Bindings bindings) {
+    Plan plan = plans.get(shape.getKey());
+    if( plan == null || plan.bindings != bindings ) {
+      misses.increment();
+      return null;
+    }
+    plan.lastAccess = accessCounter.incrementAndGet();
+    if( plan.isCacheable() )
+      hits.increment();
+    else
+      notCacheable.increment();
+    return plan;
+  }
+
+  /**
+   * Creates a plan from a query builder which was working on {@link Shape#createProbe()} and remembers it.
+   * If the plan turns out to be not cacheable, this is remembered as well so that we do not try again for the shape
+   * @param shape
+   * @param bindings
+   * @param probeBuilder
+   * @return the plan, check {@link Plan#isCacheable()}
+   */
+  public Plan put(Shape shape, Bindings bindings, WrqQueryBuilder probeBuilder) {
+    Plan plan;
+    try {
+      plan = new Plan(bindings, shape, probeBuilder);
+    } catch (Exception e) {
+      // We do not complain here, the regular generation will report the issue, if it is a real one
+      log.trace("Wrq not cacheable: "+e.getMessage());
+      plan = new Plan(bindings);
+    }
+    plan.lastAccess = accessCounter.incrementAndGet();
+    if( plans.size() >= maxEntries )
+      evictLeastRecentlyUsed();
+    plans.put(shape.getKey(), plan);
+    return plan;
+  }
+
+  /**
+   * Drop all plans, for example after a change of the BindingSets
+   */
+  public void clear() {
+    plans.clear();
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * Number of requests with a known shape, which cannot be served from a plan
+   * @return
+   */
+  public long getNotCacheable() {
+    return notCacheable.sum();
+  }
+
+  public int getSize() {
+    return plans.size();
+  }
+
+  /**
+   * Only called on insert when we are full, a scan is cheap compared to the SQL generation we just did
+   */
+  private void evictLeastRecentlyUsed() {
+    String lruKey = null;
+    long lruAccess = Long.MAX_VALUE;
+    for( Map.Entry<String, Plan> entry: plans.entrySet() ) {
+      if( entry.getValue().lastAccess < lruAccess ) {
+        lruAccess = entry.getValue().lastAccess;
+        lruKey = entry.getKey();
+      }
+    }
+    if( lruKey != null )
+      plans.remove(lruKey);
+  }
+
+  /**
+   * @return true if there is a Subject, which is not authenticated
+   */
+  private static boolean isGuest() {
+    try {
+      Subject subject = SecurityUtils.getSubject();
+      return subject != null && ! subject.isAuthenticated();
+    } catch (Exception e) {
+      return false; // no shiro at all
+    }
+  }
+
+  /**
+   * @return true if the BindingSet has SubjectFilters or if we cannot tell
+   */
+  private static boolean hasSubjectFilters(Bindings bindings, String bindingSetName) {
+    try {
+      return bindings.get(bindingSetName, Collections.emptyList()).hasSubjectFilters();
+    } catch (Exception e) {
+      return true;
+    }
+  }
+
+  /**
+   * Rights of the Subject go into the SQL via SubjectFilters, so we need to distinguish them.
+   * We use a digest as the number of permissions can be large
+   * @return
+   */
+  protected String getSubjectSignature() {
+    Subject subject = null;
+    try { subject = SecurityUtils.getSubject(); } catch (Exception e) {/* no shiro at all */}
+    if( subject == null )
+      return "-";
+    // Guests only get here for BindingSets without SubjectFilters, see getShape()
+    if( ! subject.isAuthenticated() )
+      return WebUtils.isHttp(subject) ? "h" : "b";
+    // Permissions only change together with the session's SubjectConditionCache
+    SubjectConditionCache cache = SubjectConditionCache.get(subject);
+    String signature = cache != null ? cache.subjectSignature : null;
+    if( signature == null ) {
+      StringBuilder sb = new StringBuilder();
+      sb.append(SecurityHelper.getUserId(subject));
+      for( String perm: new TreeSet<>(SecurityHelper.getPermissions(subject, null)) )
+        sb.append('|').append(perm);
+      sb.append("|roles");
+      for( String role: new TreeSet<>(SecurityHelper.getRoles(subject)) )
+        sb.append('|').append(role);
+      signature = DigestUtils.sha256Hex(sb.toString());
+      if( cache != null )
+        cache.subjectSignature = signature;
+    }
+    return (WebUtils.isHttp(subject) ? "h" : "b") + "|" + signature;
+  }
+
+  /**
+   * The shape of a concrete Wrq plus the f:Expression elements, whose values are bound at runtime
+   */
+  public static class Shape
+  {
+    private final Document requestDoc;
+    private final StringBuilder key = new StringBuilder();
+    private final List<Integer> paramOrdinals = new ArrayList<>(); // Position of the f:Expression in document order
+    private final List<Element> paramElements = new ArrayList<>();
+    private final List<String> paramAttributes = new ArrayList<>(); // value or seekValue
+    private final List<Integer> paramParts = new ArrayList<>();    // 0 for a single value, number of values for IN lists
+    private int elementOrdinal = 0;
+
+    private Shape(Document requestDoc) {
+      this.requestDoc = requestDoc;
+    }
+
+    public String getKey() {
+      return key.toString();
+    }
+
+    /**
+     * Serializes the element recursively into the key, leaving out the values we can bind
+     * @param elem
+     */
+    private void collect(Element elem) {
+      int ordinal = elementOrdinal++;
+      key.append('<').append(elem.getNamespaceURI()).append(':').append(elem.getLocalName());
+
+      String paramAttribute = getParameterizableAttribute(elem);
+      boolean isParam = paramAttribute != null;
+      NamedNodeMap atts = elem.getAttributes();
+      List<String> attStrings = new ArrayList<>(atts.getLength());
+      for( int a=0; a<atts.getLength(); a++ ) {
+        Attr att = (Attr)atts.item(a);
+        if( XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(att.getNamespaceURI()) )
+          continue;
+        if( isParam && att.getNamespaceURI() == null && paramAttribute.equals(att.getLocalName()) )
+          continue;
+        attStrings.add(att.getNamespaceURI()+":"+att.getLocalName()+"=\""+att.getValue()+"\"");
+      }
+      Collections.sort(attStrings);
+      for( String attString: attStrings )
+        key.append(' ').append(attString);
+
+      if( isParam ) {
+        String op = elem.getAttribute("op").trim().toLowerCase();
+        int parts = splitOps.contains(op) ? elem.getAttribute("value").split(",").length : 0;
+        paramOrdinals.add(ordinal);
+        paramElements.add(elem);
+        paramAttributes.add(paramAttribute);
+        paramParts.add(parts);
+        key.append(' ').append(paramAttribute).append("=?").append(parts);
+      }
+      key.append('>');
+
+      for( Node child = elem.getFirstChild(); child != null; child = child.getNextSibling() ) {
+        if( child.getNodeType() == Node.ELEMENT_NODE )
+          collect((Element)child);
+        else if( child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE ) {
+          String text = child.getNodeValue().trim();
+          if( ! text.isEmpty() )
+            key.append(text.replace("<", "&lt;"));
+        }
+      }
+      key.append("</>");
+    }
+
+    /**
+     * Only a non-empty f:Expression/@value or wrq:Ordering/wrq:C/@seekValue, which is used unmodified during SQL generation, can be bound at runtime
+     * @param elem
+     * @return the name of the attribute or null
+     */
+    private String getParameterizableAttribute(Element elem) {
+      if( StandardNamespaceContext.WRSREQUEST_NAMESPACE.equals(elem.getNamespaceURI()) && "C".equals(elem.getLocalName())
+          && elem.getParentNode() != null && "Ordering".equals(elem.getParentNode().getLocalName()) )
+        return elem.getAttribute("seekValue").isEmpty() ? null : "seekValue";
+      if( ! StandardNamespaceContext.FILTER_NAMESPACE.equals(elem.getNamespaceURI()) || ! "Expression".equals(elem.getLocalName()) )
+        return null;
+      String value = elem.getAttribute("value");
+      if( value.isEmpty() || elem.hasAttribute("bRef2") || "true".equals(elem.getAttribute("ic")) )
+        return null;
+      String op = elem.getAttribute("op").trim().toLowerCase();
+      if( nonParameterizableOps.contains(op) )
+        return null;
+      return ! splitOps.contains(op) || value.split(",").length > 0 ? "value" : null;
+    }
+
+    /**
+     * A copy of the Wrq with markers instead of the parameterized values
+     * @return
+     * @throws Exception
+     */
+    public Document createProbe() throws Exception {
+      Document probe = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+      probe.appendChild(probe.importNode(requestDoc.getDocumentElement(), true));
+      NodeList allElems = probe.getElementsByTagName("*");
+      for( int p=0; p<paramOrdinals.size(); p++ ) {
+        Element probeElem = (Element)allElems.item(paramOrdinals.get(p));
+        int parts = paramParts.get(p);
+        if( parts == 0 ) {
+          probeElem.setAttribute(paramAttributes.get(p), MARKER+p);
+        } else {
+          StringBuilder value = new StringBuilder();
+          for( int v=0; v<parts; v++ )
+            value.append(v > 0 ? "," : "").append(MARKER).append(p).append('x').append(v);
+          probeElem.setAttribute("value", value.toString());
+        }
+      }
+      return probe;
+    }
+  }
+
+  /**
+   * The generated SQL for a shape, ready to be bound to the values of a concrete Wrq
+   */
+  public static class Plan
+  {
+    private final Bindings bindings;
+    private final boolean isCacheable;
+    private String statement;
+    private int[] slotParams;       // Index of the parameter for a bound variable, -1 for constants
+    private int[] slotParts;        // Index within an IN list, -1 for single values
+    private Element[] slotConstants;
+    private String[] constantValues;
+    private BindingItem[] slotBindingItems;
+    private LinkedList<WrsBindingItem> selectedBindingItems;
+    private Set<StandardBindingSet> resolvedBindingSets;
+    private String jdbcResourceName;
+    private volatile long lastAccess;
+
+    /**
+     * Plan for a shape which cannot be cached, remembered to not create a probe again and again
+     */
+    private Plan(Bindings bindings) {
+      this.bindings = bindings;
+      this.isCacheable = false;
+    }
+
+    private Plan(Bindings bindings, Shape shape, WrqQueryBuilder probeBuilder) throws Exception {
+      this.bindings = bindings;
+      SQLStatementWithParams probeStmt = probeBuilder.getSelectStatement();
+      statement = probeStmt.getStatement();
+      if( statement.toLowerCase().contains(MARKER.toLowerCase()) )
+        throw new Exception("Parameter became part of the SQL text");
+
+      List<String> values = probeStmt.getFilterValues();
+      List<Element> items = probeStmt.getFilterItems();
+      List<BindingItem> bis = probeStmt.getFilterBindingItems();
+      slotParams = new int[values.size()];
+      slotParts = new int[values.size()];
+      slotConstants = new Element[values.size()];
+      constantValues = new String[values.size()];
+      slotBindingItems = bis.toArray(new BindingItem[values.size()]);
+
+      for( int s=0; s<values.size(); s++ ) {
+        String value = values.get(s);
+        Matcher m = markerPattern.matcher(value);
+        if( m.matches() ) {
+          slotParams[s] = Integer.parseInt(m.group(1));
+          slotParts[s] = m.group(2) != null ? Integer.parseInt(m.group(2)) : -1;
+          if( (slotParts[s] == -1) != (shape.paramParts.get(slotParams[s]) == 0) )
+            throw new Exception("Unexpected use of IN parameter");
+        } else if( value.toLowerCase().contains(MARKER.toLowerCase()) ) {
+          throw new Exception("Parameter was modified during SQL generation");
+        } else {
+          slotParams[s] = -1;
+          slotParts[s] = -1;
+          slotConstants[s] = items.get(s);
+          constantValues[s] = value;
+        }
+      }
+
+      selectedBindingItems = probeBuilder.getSelectedBindingItems();
+      resolvedBindingSets = Collections.unmodifiableSet(new HashSet<>(probeBuilder.getResolvedBindingSets()));
+      jdbcResourceName = probeBuilder.getJdbcResourceName();
+      isCacheable = true;
+    }
+
+    public boolean isCacheable() {
+      return isCacheable;
+    }
+
+    /**
+     * Creates the statement for a concrete Wrq having our shape
+     * @param shape
+     * @return
+     */
+    public SQLStatementWithParams bind(Shape shape) {
+      SQLStatementWithParams stmt = new SQLStatementWithParams(statement);
+      String[][] splitValues = new String[shape.paramElements.size()][];
+      for( int s=0; s<slotParams.length; s++ ) {
+        int p = slotParams[s];
+        if( p == -1 ) {
+          stmt.appendBoundVariable(slotConstants[s], constantValues[s], slotBindingItems[s]);
+        } else if( slotParts[s] == -1 ) {
+          Element paramElem = shape.paramElements.get(p);
+          stmt.appendBoundVariable(paramElem, paramElem.getAttribute(shape.paramAttributes.get(p)), slotBindingItems[s]);
+        } else {
+          // Same as WrqFilter2Sql does for IN lists
+          if( splitValues[p] == null )
+            splitValues[p] = shape.paramElements.get(p).getAttribute("value").split(",");
+          Element e = shape.requestDoc.createElement("InElement");
+          e.setAttribute("bRef", shape.paramElements.get(p).getAttribute("bRef"));
+          e.setAttribute("value", splitValues[p][slotParts[s]]);
+          stmt.appendBoundVariable(e, e.getAttribute("value"), slotBindingItems[s]);
+        }
+      }
+      return stmt;
+    }
+
+    public LinkedList<WrsBindingItem> getSelectedBindingItems() {
+      return selectedBindingItems;
+    }
+
+    public Set<StandardBindingSet> getResolvedBindingSets() {
+      return resolvedBindingSets;
+    }
+
+    public String getJdbcResourceName() {
+      return jdbcResourceName;
+    }
+  }
+}
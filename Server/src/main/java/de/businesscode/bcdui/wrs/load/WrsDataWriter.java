@@ -15,29 +15,29 @@
 */
 package de.businesscode.bcdui.wrs.load;
 
+import java.io.Reader;
 import java.io.StringReader;
 import java.io.Writer;
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.math.BigDecimal;
 import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLXML;
 import java.sql.Timestamp;
 import java.sql.Types;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.Base64;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.stream.Collectors;
 import java.time.Instant;
+import java.time.format.DateTimeFormatter;
 
+import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.stax.StAXResult;
-import javax.xml.transform.stream.StreamSource;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -62,15 +62,23 @@ public class WrsDataWriter extends AbstractDataWriter implements IDataWriter {
   //
   private boolean maxRowsExceed = false;
   private boolean errorDuringQuery = false;
-  private final DateFormat xmlTimeStampFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-  private final DateFormat xmlDateFormat = new SimpleDateFormat("yyyy-MM-dd");
-  private final Transformer transformer;
-  {
-    try {
-      this.transformer = SecureXmlFactory.newTransformerFactory().newTransformer();
-    } catch (Exception e) {
-      throw new RuntimeException(e);
-    }
+  private static final DateTimeFormatter xmlTimeStampFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+  private static final DateTimeFormatter xmlDateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+  //
+  // Per result set: the wrs:C binding items of a row and, by column number, the value writer chosen for it together with its type
+  private WrsBindingItem[] rowItems;
+  private ColumnValueWriter[] columnValueWriters;
+  private int[] columnValueWriterTypes;
+  private final char[] numberBuffer = new char[20];
+  private XMLInputFactory embeddedXmlInputFactory;
+
+  /**
+   * Writes the value of a wrs:C for the current row of the result set.
+   * It is chosen once per column in {@link #createColumnValueWriter(int, int)}, so that the type dispatch does not happen per cell.
+   */
+  @FunctionalInterface
+  protected interface ColumnValueWriter {
+    void write(int colNum) throws Exception;
   }
 
 
@@ -376,6 +384,7 @@ public class WrsDataWriter extends AbstractDataWriter implements IDataWriter {
     setErrorDuringQuery(false);
     int maxRows = getGenerator().getMaxRows();
     int rowNum = 0;
+    prepareColumnValueWriters();
     //
     while (!isErrorDuringQuery() && getResultSet().next()) {
       rowNum++;
@@ -401,14 +410,14 @@ public class WrsDataWriter extends AbstractDataWriter implements IDataWriter {
     getWriter().writeStartElement("R");
     writeWrsDataRowAttributes(rowNum);
     //
-    int c = 0;
-    for (WrsBindingItem item : getGenerator().getSelectedBindingItems()) {
-      writeWrsDataRowColumn(item);
-      c++;
+    if (rowItems == null) {
+      prepareColumnValueWriters();
+    }
+    for (int c = 0; c < rowItems.length; c++) {
+      writeWrsDataRowColumn(rowItems[c]);
       if (isErrorDuringQuery()) {
         // write missing C elements in case of an error
-        int missingCs = getGenerator().getSelectedBindingItems().size() - c;
-        for (int i = 0; i < missingCs; i++) {
+        for (int i = c + 1; i < rowItems.length; i++) {
           getWriter().writeStartElement("C");
           getWriter().writeEndElement(); // C
         }
@@ -433,6 +442,28 @@ public class WrsDataWriter extends AbstractDataWriter implements IDataWriter {
     getWriter().writeAttribute("id", rowId);
   }
 
+  /**
+   * Chooses the value writer of each selected binding item once for the current result set,
+   * based on the binding's type, the JDBC type reported by the ResultSetMetaData and whether the column is escaped
+   *
+   * @throws Exception
+   */
+  protected void prepareColumnValueWriters() throws Exception {
+    List<WrsBindingItem> items = getGenerator().getSelectedBindingItems();
+    rowItems = items.toArray(new WrsBindingItem[items.size()]);
+    int maxColNum = 0;
+    for (WrsBindingItem item : rowItems) {
+      maxColNum = Math.max(maxColNum, item.getColumnNumber());
+    }
+    columnValueWriters = new ColumnValueWriter[maxColNum + 1];
+    columnValueWriterTypes = new int[maxColNum + 1];
+    for (WrsBindingItem item : rowItems) {
+      int colNum = item.getColumnNumber();
+      columnValueWriters[colNum] = createColumnValueWriter(item.getJDBCDataType(), colNum);
+      columnValueWriterTypes[colNum] = item.getJDBCDataType();
+    }
+  }
+
   /**
    * writeWrsDataRowColumn
    *
@@ -462,89 +493,262 @@ public class WrsDataWriter extends AbstractDataWriter implements IDataWriter {
    * @throws Exception
    */
   protected void writeWrsDataRowColumnValue(int jdbcColumnType, int colNum) throws Exception {
+    ColumnValueWriter valueWriter = null;
+    if (columnValueWriters != null && colNum < columnValueWriters.length && columnValueWriterTypes[colNum] == jdbcColumnType) {
+      valueWriter = columnValueWriters[colNum];
+    }
+    if (valueWriter == null) {
+      valueWriter = createColumnValueWriter(jdbcColumnType, colNum);
+    }
+    valueWriter.write(colNum);
+  }
+
+  /**
+   * Returns the writer for the values of a column
+   *
+   * @param jdbcColumnType
+   *          - the type of the binding item
+   * @param colNum
+   *          - starts with 1 (JDBC compliant)
+   * @return
+   * @throws Exception
+   */
+  protected ColumnValueWriter createColumnValueWriter(int jdbcColumnType, int colNum) throws Exception {
     switch (jdbcColumnType) {
-      case Types.TIMESTAMP: {
-        Timestamp data = getResultSet().getTimestamp(colNum);
-        if (data == null || getResultSet().wasNull()) {
-          getWriter().writeEmptyElement("null");
-        }
-        else {
-          getWriter().writeCharacters(xmlTimeStampFormat.format(data));
-        }
-        break;
-      }
-      case Types.DATE: {
-        Date data = getResultSet().getDate(colNum);
-        if (data == null || getResultSet().wasNull()) {
-          getWriter().writeEmptyElement("null");
-        }
-        else {
-          getWriter().writeCharacters(xmlDateFormat.format(data));
-        }
-        break;
-      }
+      case Types.TIMESTAMP:
+        return this::writeTimestampValue;
+      case Types.DATE:
+        return this::writeDateValue;
       case Types.FLOAT:
       case Types.DOUBLE:
       case Types.DECIMAL:
       case Types.INTEGER: // This assures, that an avg() on an integer column is returned correctly
       case Types.NUMERIC: {
-        BigDecimal data = getResultSet().getBigDecimal(colNum);
-        if (data == null || getResultSet().wasNull()) {
-          getWriter().writeEmptyElement("null");
-        }
-        else {
-          getWriter().writeCharacters(data.toPlainString());
+        // Only if the column really is integral in the result set, we can skip BigDecimal
+        ResultSetMetaData metaData = getResultSetMetaData();
+        int resultSetColumnType = metaData != null ? metaData.getColumnType(colNum) : Types.NUMERIC;
+        switch (resultSetColumnType) {
+          case Types.TINYINT:
+          case Types.SMALLINT:
+          case Types.INTEGER:
+            return this::writeIntValue;
+          case Types.BIGINT:
+            return this::writeLongValue;
+          default:
+            return this::writeDecimalValue;
         }
-        break;
       }
       case Types.BLOB: {
-        BindingSet bs = getGenerator().getResolvedBindingSets().iterator().next(); // We only need this for DatabaseCompatibility, so any does
-        byte[] data = DatabaseCompatibility.getInstance().getBlob(bs.getName(), getResultSet(), colNum);
-        if (data == null || data.length == 0 || getResultSet().wasNull()){
-          getWriter().writeEmptyElement("null");
-        }else{
-          String b64 = Base64.getEncoder().encodeToString(data);
-          getWriter().writeCharacters(b64);
-        }
-        break;
+        // We only need this for DatabaseCompatibility, so any does
+        final String bsName = getGenerator().getResolvedBindingSets().iterator().next().getName();
+        return (col) -> writeBlobValue(bsName, col);
       }
       case Types.CLOB: {
-        BindingSet bs = getGenerator().getResolvedBindingSets().iterator().next();
-        String data = DatabaseCompatibility.getInstance().getClob(bs.getName(), getResultSet(), colNum);
-        if (data == null || getResultSet().wasNull()) {
-          getWriter().writeEmptyElement("null");
-        }
-        else if (isEscapeXMLType(colNum)){
-          getWriter().writeCharacters(data);
-        }
-        else{
-          transformer.transform(new StreamSource(new StringReader(data)), new StAXResult(createXMLStreamWriterWrapper(getWriter())));
-        }
-        break;
+        final String bsName = getGenerator().getResolvedBindingSets().iterator().next().getName();
+        final boolean escapeXml = isEscapeXMLType(colNum);
+        return (col) -> writeClobValue(bsName, col, escapeXml);
       }
-      case Types.SQLXML: {
-        SQLXML data = getResultSet().getSQLXML(colNum);
-        if ( data == null || getResultSet().wasNull()){
-          getWriter().writeEmptyElement("null");
-        }else if (isEscapeXMLType(colNum)){
-          getWriter().writeCharacters(data.getString());
-        }else{
-          transformer.transform(data.getSource(StreamSource.class), new StAXResult(createXMLStreamWriterWrapper(getWriter())));
-        }
-        break;
+      case Types.SQLXML:
+        return isEscapeXMLType(colNum) ? this::writeEscapedSqlXmlValue : this::writeEmbeddedSqlXmlValue;
+      default:
+        return isEscapeXMLType(colNum) ? this::writeStringValue : this::writeEmbeddedXmlStringValue;
+    }
+  }
+
+  private void writeTimestampValue(int colNum) throws Exception {
+    Timestamp data = getResultSet().getTimestamp(colNum);
+    if (data == null || getResultSet().wasNull()) {
+      getWriter().writeEmptyElement("null");
+    }
+    else {
+      getWriter().writeCharacters(xmlTimeStampFormat.format(data.toLocalDateTime()));
+    }
+  }
+
+  private void writeDateValue(int colNum) throws Exception {
+    Date data = getResultSet().getDate(colNum);
+    if (data == null || getResultSet().wasNull()) {
+      getWriter().writeEmptyElement("null");
+    }
+    else {
+      getWriter().writeCharacters(xmlDateFormat.format(data.toLocalDate()));
+    }
+  }
+
+  private void writeIntValue(int colNum) throws Exception {
+    int data = getResultSet().getInt(colNum);
+    if (getResultSet().wasNull()) {
+      getWriter().writeEmptyElement("null");
+    }
+    else {
+      writeLongCharacters(data);
+    }
+  }
+
+  private void writeLongValue(int colNum) throws Exception {
+    long data = getResultSet().getLong(colNum);
+    if (getResultSet().wasNull()) {
+      getWriter().writeEmptyElement("null");
+    }
+    else {
+      writeLongCharacters(data);
+    }
+  }
+
+  private void writeDecimalValue(int colNum) throws Exception {
+    BigDecimal data = getResultSet().getBigDecimal(colNum);
+    if (data == null || getResultSet().wasNull()) {
+      getWriter().writeEmptyElement("null");
+    }
+    else {
+      getWriter().writeCharacters(data.toPlainString());
+    }
+  }
+
+  private void writeBlobValue(String bsName, int colNum) throws Exception {
+    byte[] data = DatabaseCompatibility.getInstance().getBlob(bsName, getResultSet(), colNum);
+    if (data == null || data.length == 0 || getResultSet().wasNull()){
+      getWriter().writeEmptyElement("null");
+    }else{
+      String b64 = Base64.getEncoder().encodeToString(data);
+      getWriter().writeCharacters(b64);
+    }
+  }
+
+  private void writeClobValue(String bsName, int colNum, boolean escapeXml) throws Exception {
+    String data = DatabaseCompatibility.getInstance().getClob(bsName, getResultSet(), colNum);
+    if (data == null || getResultSet().wasNull()) {
+      getWriter().writeEmptyElement("null");
+    }
+    else if (escapeXml){
+      getWriter().writeCharacters(data);
+    }
+    else{
+      writeEmbeddedXml(new StringReader(data));
+    }
+  }
+
+  private void writeEscapedSqlXmlValue(int colNum) throws Exception {
+    SQLXML data = getResultSet().getSQLXML(colNum);
+    if ( data == null || getResultSet().wasNull()){
+      getWriter().writeEmptyElement("null");
+    }else{
+      getWriter().writeCharacters(data.getString());
+    }
+  }
+
+  private void writeEmbeddedSqlXmlValue(int colNum) throws Exception {
+    SQLXML data = getResultSet().getSQLXML(colNum);
+    if ( data == null || getResultSet().wasNull()){
+      getWriter().writeEmptyElement("null");
+    }else{
+      try (Reader reader = data.getCharacterStream()) {
+        writeEmbeddedXml(reader);
       }
-      default: {
-        String data = getResultSet().getString(colNum);
-        if (data == null || getResultSet().wasNull()) {
-          getWriter().writeEmptyElement("null");
-        } else if (isEscapeXMLType(colNum) ) {
-          getWriter().writeCharacters(data);
-        } else {
-          transformer.transform(
-              new StreamSource(new StringReader(data)), new StAXResult(createXMLStreamWriterWrapper(getWriter())));
+    }
+  }
+
+  private void writeStringValue(int colNum) throws Exception {
+    ResultSet rs = getResultSet();
+    String data = rs.getString(colNum);
+    if (data == null || rs.wasNull()) {
+      getWriter().writeEmptyElement("null");
+    } else {
+      getWriter().writeCharacters(data);
+    }
+  }
+
+  private void writeEmbeddedXmlStringValue(int colNum) throws Exception {
+    String data = getResultSet().getString(colNum);
+    if (data == null || getResultSet().wasNull()) {
+      getWriter().writeEmptyElement("null");
+    } else {
+      writeEmbeddedXml(new StringReader(data));
+    }
+  }
+
+  /**
+   * Writes the decimal digits of value without creating a String for it
+   */
+  private void writeLongCharacters(long value) throws XMLStreamException {
+    if (value == Long.MIN_VALUE) {
+      getWriter().writeCharacters(Long.toString(value));
+      return;
+    }
+    char[] buf = numberBuffer;
+    int pos = buf.length;
+    boolean negative = value < 0;
+    if (negative) value = -value;
+    do {
+      buf[--pos] = (char) ('0' + (value % 10));
+      value /= 10;
+    } while (value != 0);
+    if (negative) buf[--pos] = '-';
+    getWriter().writeCharacters(buf, pos, buf.length - pos);
+  }
+
+  /**
+   * Copies the xml read from the reader into our writer, skipping start and end document
+   * This replaces an identity transformation and does not need a wrapper around the writer
+   *
+   * @param reader
+   * @throws XMLStreamException
+   */
+  private void writeEmbeddedXml(Reader reader) throws XMLStreamException {
+    if (embeddedXmlInputFactory == null) {
+      embeddedXmlInputFactory = SecureXmlFactory.newXMLInputFactory();
+    }
+    XMLStreamWriter w = getWriter();
+    XMLStreamReader r = embeddedXmlInputFactory.createXMLStreamReader(reader);
+    try {
+      while (r.hasNext()) {
+        switch (r.next()) {
+          case XMLStreamConstants.START_ELEMENT: {
+            String prefix = r.getPrefix();
+            String ns = r.getNamespaceURI();
+            w.writeStartElement(prefix == null ? "" : prefix, r.getLocalName(), ns == null ? "" : ns);
+            for (int i = 0; i < r.getNamespaceCount(); i++) {
+              String nsPrefix = r.getNamespacePrefix(i);
+              if (nsPrefix == null || nsPrefix.isEmpty()) {
+                w.writeDefaultNamespace(r.getNamespaceURI(i));
+              } else {
+                w.writeNamespace(nsPrefix, r.getNamespaceURI(i));
+              }
+            }
+            for (int i = 0; i < r.getAttributeCount(); i++) {
+              String attrPrefix = r.getAttributePrefix(i);
+              String attrNs = r.getAttributeNamespace(i);
+              if (attrNs == null || attrNs.isEmpty()) {
+                w.writeAttribute(r.getAttributeLocalName(i), r.getAttributeValue(i));
+              } else {
+                w.writeAttribute(attrPrefix == null ? "" : attrPrefix, attrNs, r.getAttributeLocalName(i), r.getAttributeValue(i));
+              }
+            }
+            break;
+          }
+          case XMLStreamConstants.END_ELEMENT:
+            w.writeEndElement();
+            break;
+          case XMLStreamConstants.CHARACTERS:
+          case XMLStreamConstants.CDATA:
+          case XMLStreamConstants.SPACE:
+            w.writeCharacters(r.getTextCharacters(), r.getTextStart(), r.getTextLength());
+            break;
+          case XMLStreamConstants.COMMENT:
+            w.writeComment(r.getText());
+            break;
+          case XMLStreamConstants.PROCESSING_INSTRUCTION:
+            w.writeProcessingInstruction(r.getPITarget(), r.getPIData());
+            break;
+          case XMLStreamConstants.ENTITY_REFERENCE:
+            w.writeEntityRef(r.getLocalName());
+            break;
+          default: // START_DOCUMENT, END_DOCUMENT, DTD
+            break;
         }
-        break;
       }
+    } finally {
+      r.close();
     }
   }
 
@@ -565,12 +769,12 @@ public class WrsDataWriter extends AbstractDataWriter implements IDataWriter {
           case Types.TIMESTAMP:
             Timestamp t = getResultSet().getTimestamp(colNum);
             if( t != null && !getResultSet().wasNull() )
-              getWriter().writeAttribute(name, xmlTimeStampFormat.format(t));
+              getWriter().writeAttribute(name, xmlTimeStampFormat.format(t.toLocalDateTime()));
             break;
           case Types.DATE:
             Date d = getResultSet().getDate(colNum);
             if( d != null && !getResultSet().wasNull() )
-              getWriter().writeAttribute(name, xmlDateFormat.format(d));
+              getWriter().writeAttribute(name, xmlDateFormat.format(d.toLocalDate()));
             break;
           case Types.INTEGER:
           case Types.DECIMAL:
@@ -612,20 +816,4 @@ public class WrsDataWriter extends AbstractDataWriter implements IDataWriter {
     getWriter().writeEndElement(); // max-rows-exceed
     getWriter().writeEndElement(); // Footer
   }
-
-  private XMLStreamWriter createXMLStreamWriterWrapper(final XMLStreamWriter writer) {
-    return (XMLStreamWriter) Proxy.newProxyInstance(
-        getClass().getClassLoader(),
-        new Class<?>[] { XMLStreamWriter.class },
-        new InvocationHandler() {
-
-      @Override
-      public Object invoke(Object ignored, Method method, Object[] args) throws Throwable {
-        if (method.getName().endsWith("StartDocument") ||
-            method.getName().endsWith("EndDocument"))
-          return null;
-        return method.invoke(writer, args);
-      }
-    });
-  }
 }
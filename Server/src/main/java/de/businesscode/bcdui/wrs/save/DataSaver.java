@@ -15,8 +15,19 @@
 */
 package de.businesscode.bcdui.wrs.save;
 
+import java.sql.Connection;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.stream.EventFilter;
 import javax.xml.stream.XMLEventReader;
@@ -26,17 +37,39 @@ import javax.xml.stream.events.XMLEvent;
 import javax.xml.stream.util.XMLEventConsumer;
 
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.UnavailableSecurityManagerException;
 
 import de.businesscode.util.xml.SecureXmlFactory;
 
+import de.businesscode.bcdui.binding.BindingSet;
 import de.businesscode.bcdui.binding.Bindings;
+import de.businesscode.bcdui.toolbox.config.BareConfiguration;
 import de.businesscode.bcdui.wrs.IRequestOptions;
 import de.businesscode.bcdui.wrs.save.event.ISaveEventListener;
 import de.businesscode.bcdui.wrs.save.event.SaveEvent;
 import de.businesscode.bcdui.wrs.save.event.SaveEventState;
 
+/**
+ * Writes the wrs:Wrs documents of a request into the database.
+ * With bcdui/wrs/save/parallel set to true, documents for BindingSets of different jdbcResourceNames are written concurrently.
+ * For this the request is read into memory first, documents for the same jdbcResourceName are still written in their order.
+ * All connections are acquired on the calling thread, so commit and rollback happen together as usual at the end of the request.
+ * In this mode the {@link ISaveEventListener} receives the StartSaving and EndSaving events concurrently from the writing threads.
+ */
 public class DataSaver {
 
+  public static final String PARAM_PARALLEL = "bcdui/wrs/save/parallel";
+
+  private static final class Holder {
+    static final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+      Thread t = new Thread(r, DataSaver.class.getName() + ".Worker");
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
   private Bindings bindings = null;
   private XMLEventReader dataReader = null;
   private Logger logger = null;
@@ -88,6 +121,11 @@ public class DataSaver {
 
     fireEvent(SaveEventState.AfterTransformation);
 
+    if (BareConfiguration.getInstance().getConfigurationParameter(PARAM_PARALLEL, false)) {
+      runParallel(input);
+      return;
+    }
+
     XMLEventConsumer xmlToDataBaseHandler = new XMLToDataBase(bindings, options , options.getMaxSQLBatchSize(), logger, listener, options.isDebugMode());
     try {
       while (input.hasNext()) {
@@ -100,6 +138,130 @@ public class DataSaver {
     }
   }
 
+  /**
+   * Splits the input into its wrs:Wrs, groups them by jdbcResourceName and writes each group on its own thread.
+   * {@link XMLStreamSplitter} only separates the leading meta data from the data, the wrs:Wrs within the data are separated here.
+   */
+  private void runParallel(XMLEventReader input) throws Exception {
+    Map<String, List<XMLEvent>> groups = new LinkedHashMap<>();
+    try {
+      List<XMLEvent> wrs = null;
+      StringBuilder bindingSetName = null;
+      boolean inBindingSet = false;
+      int level = 0;
+      while (input.hasNext()) {
+        XMLEvent event = input.nextEvent();
+        if (event.isStartElement()) {
+          String name = event.asStartElement().getName().getLocalPart();
+          if (level == 0 && "Wrs".equals(name)) {
+            wrs = new ArrayList<>();
+            bindingSetName = null;
+          }
+          else if (wrs != null && bindingSetName == null && "BindingSet".equals(name)) {
+            bindingSetName = new StringBuilder();
+            inBindingSet = true;
+          }
+          if (wrs != null)
+            level++;
+        }
+        // The reader may deliver the text in several chunks
+        else if (inBindingSet && event.isCharacters()) {
+          bindingSetName.append(event.asCharacters().getData());
+        }
+        else if (inBindingSet && event.isEndElement()) {
+          inBindingSet = false;
+        }
+        if (wrs == null)
+          continue;
+
+        wrs.add(event);
+        if (event.isEndElement() && --level == 0) {
+          groups.computeIfAbsent(getJdbcResourceName(bindingSetName != null ? bindingSetName.toString().trim() : null), k -> new ArrayList<>()).addAll(wrs);
+          wrs = null;
+        }
+      }
+    } catch (Exception ex) {
+      fireEvent(SaveEventState.Rollback);
+      throw ex;
+    }
+
+    // Managed connections are bound to this thread, so we get them here and hand them over to the workers
+    Map<String, Connection> connections = new HashMap<>();
+    if (groups.size() > 1) {
+      for (String dbSourceName : groups.keySet())
+        connections.put(dbSourceName, options.getManagedConnection(BindingSet.DEFAULT_DATABASE_SOURCENAME.equals(dbSourceName) ? null : dbSourceName));
+    }
+
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (List<XMLEvent> events : groups.values()) {
+      XMLToDataBase xmlToDataBaseHandler = new XMLToDataBase(bindings, options , options.getMaxSQLBatchSize(), logger, listener, options.isDebugMode());
+      if (groups.size() > 1)
+        xmlToDataBaseHandler.setManagedConnections(connections);
+      tasks.add(() -> {
+        for (XMLEvent event : events)
+          xmlToDataBaseHandler.add(event);
+        return null;
+      });
+    }
+
+    // The first group is written by ourselves, we wait for all others before returning so that no connection is in use anymore when committing
+    List<Future<Void>> futures = new ArrayList<>();
+    for (int t = 1; t < tasks.size(); t++)
+      futures.add(Holder.executor.submit(inCallerContext(tasks.get(t))));
+    Exception firstException = null;
+    try {
+      if (!tasks.isEmpty())
+        tasks.get(0).call();
+    } catch (Exception ex) {
+      firstException = ex;
+    }
+    for (Future<Void> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException ex) {
+        if (firstException == null)
+          firstException = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+      }
+    }
+    if (firstException != null) {
+      fireEvent(SaveEventState.Rollback);
+      throw firstException;
+    }
+  }
+
+  /**
+   * @return jdbcResourceName of the BindingSet, BindingSet.DEFAULT_DATABASE_SOURCENAME if it is the default or unknown
+   */
+  private String getJdbcResourceName(String bindingSetName) {
+    try {
+      String jdbcResourceName = bindings.get(bindingSetName, Collections.emptyList()).getJdbcResourceName();
+      return jdbcResourceName == null || jdbcResourceName.isEmpty() ? BindingSet.DEFAULT_DATABASE_SOURCENAME : jdbcResourceName;
+    } catch (Exception e) {
+      // Reported when writing
+      return BindingSet.DEFAULT_DATABASE_SOURCENAME;
+    }
+  }
+
+  /**
+   * Lets the task run with the subject and the log context of the caller
+   */
+  private static <T> Callable<T> inCallerContext(Callable<T> task) {
+    Map<String, String> context = ThreadContext.getImmutableContext();
+    Callable<T> withContext = () -> {
+      ThreadContext.putAll(context);
+      try {
+        return task.call();
+      } finally {
+        ThreadContext.clearMap();
+      }
+    };
+    try {
+      return SecurityUtils.getSubject().associateWith(withContext);
+    } catch (UnavailableSecurityManagerException e) {
+      return withContext;
+    }
+  }
+
   private void fireEvent(SaveEventState eventState){
     if(listener != null){
       listener.actionPerformed(new SaveEvent(null, eventState));
@@ -18,6 +18,9 @@ package de.businesscode.bcdui.wrs.save;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
@@ -41,6 +44,7 @@ import org.apache.shiro.lang.codec.Base64;
 
 import de.businesscode.bcdui.binding.BindingItem;
 import de.businesscode.bcdui.binding.BindingSet;
+import de.businesscode.bcdui.binding.StandardBindingSet;
 import de.businesscode.bcdui.wrs.save.exc.KeyColumnsNotDefinedException;
 import de.businesscode.util.jdbc.Closer;
 import de.businesscode.util.jdbc.DatabaseCompatibility;
@@ -52,11 +56,27 @@ import de.businesscode.util.jdbc.SQLDetailException;
  * are defined and in modifyRow the values from them are not modified - the key columns
  * were ignored by setting values in SQL statement
  *
+ * Inserts can be written in bulk by setting BindingSet/@bulkInsert:
+ * "multiRow" binds many rows into one INSERT ... VALUES (...),(...) statement,
+ * "copy" streams the rows via PostgreSQL COPY and falls back to "multiRow" where COPY is not available.
+ * Both need a maxBatchSize greater 1, on databases not supporting multi-row VALUES the standard batched insert is used.
  */
 public class DatabaseWriter {
 
   private static final BigDecimal BIG_DECIMAL_ONE = new BigDecimal("1");
 
+  public static final String ATTR_BULK_INSERT = "bulkInsert";
+  public static final String BULK_INSERT_MULTI_ROW = "multiRow";
+  public static final String BULK_INSERT_COPY = "copy";
+
+  // SQL Server allows 2100 parameters per statement and 1000 rows in a VALUES clause
+  private static final int MAX_BULK_PARAMS = 2000;
+  private static final int MAX_BULK_ROWS = 1000;
+  // COPY data is collected up to this many chars before it is sent
+  private static final int MAX_COPY_CHARS = 8 * 1024 * 1024;
+
+  private enum BulkInsertMode { NONE, MULTI_ROW, COPY }
+
   private BindingSet bindingSet = null;
   private Connection defaultConnection = null;
   private BindingItem[] columns = null;
@@ -79,6 +99,13 @@ public class DatabaseWriter {
   private int insertBatchSize = 0;
   private int deleteBatchSize = 0;
 
+  private BulkInsertMode bulkInsertMode = BulkInsertMode.NONE;
+  private PreparedStatement bulkInsertStatement = null;
+  private int bulkInsertStatementRows = 0;
+  private ArrayList<String[]> bulkInsertRows = null;
+  private StringBuilder copyBuffer = null;
+  private int copyRows = 0;
+
   /**
    *
    * Constructor
@@ -105,6 +132,7 @@ public class DatabaseWriter {
       isKeyColumn[i] = keyColumnNames.contains(columnsPr[i].getId());
     }
     ensureAllKeysAvailable(bindingSetPr, keyColumnNames);
+    this.bulkInsertMode = getBulkInsertMode();
   }
 
   public void updateColumnsAndTypes(BindingItem[] columnsPr, Integer[] columnTypesPr, Collection<String> keyColumnNames) {
@@ -132,6 +160,48 @@ public class DatabaseWriter {
     }
   }
 
+  /**
+   * Derives the bulk insert mode from BindingSet/@bulkInsert, falling back to what the database supports
+   */
+  private BulkInsertMode getBulkInsertMode() {
+    String requested = bindingSet instanceof StandardBindingSet ? ((StandardBindingSet)bindingSet).getAttribute(ATTR_BULK_INSERT) : null;
+    if( requested == null || requested.isEmpty() || maxBatchSize <= 1 )
+      return BulkInsertMode.NONE;
+    if( ! BULK_INSERT_MULTI_ROW.equals(requested) && ! BULK_INSERT_COPY.equals(requested) ) {
+      log.warn("Unknown @" + ATTR_BULK_INSERT + "='" + requested + "' on BindingSet '" + bindingSet.getName() + "', using standard insert");
+      return BulkInsertMode.NONE;
+    }
+
+    String product = DatabaseCompatibility.getInstance().getDatabaseProductNameLC(bindingSet.getJdbcResourceName());
+    product = product == null ? "" : product;
+    if( BULK_INSERT_COPY.equals(requested) ) {
+      if( product.contains("postgresql") && isCopyApplicable() )
+        return BulkInsertMode.COPY;
+      log.debug("COPY not applicable for BindingSet '" + bindingSet.getName() + "', using multi-row insert");
+    }
+    if( product.contains("oracle") || product.contains("teradata") ) {
+      log.debug("Multi-row insert not supported by " + product + ", using standard insert for BindingSet '" + bindingSet.getName() + "'");
+      return BulkInsertMode.NONE;
+    }
+    return BulkInsertMode.MULTI_ROW;
+  }
+
+  /**
+   * COPY needs the PostgreSQL driver behind our connection and columns which can be given in their text representation
+   */
+  private boolean isCopyApplicable() {
+    for (int i = 0; i < columns.length; ++i) {
+      if( columnTypes[i] == Types.BLOB || columnTypes[i] == Types.SQLXML
+          || (columns[i].isDefinedJDBCDataType() && columns[i].getJDBCDataType() == Types.OTHER) )
+        return false;
+    }
+    try {
+      return defaultConnection.isWrapperFor(Class.forName("org.postgresql.PGConnection"));
+    } catch (ClassNotFoundException | SQLException e) {
+      return false;
+    }
+  }
+
   /**
    * creates and returns UPDATE SQL or String with length = 0, if the request doesn't have any key columns
    *
@@ -208,6 +278,15 @@ public class DatabaseWriter {
    * @return
    */
   private String getInsertStatementSQL() {
+    return getInsertStatementSQL(1);
+  }
+
+  /**
+   * INSERT statement with a VALUES clause for the given number of rows
+   * @param rows
+   * @return
+   */
+  private String getInsertStatementSQL(int rows) {
     StringBuilder builder = new StringBuilder();
     builder.append("INSERT INTO ");
     builder.append(bindingSet.getTableReference());
@@ -219,7 +298,9 @@ public class DatabaseWriter {
       sep = ", ";
     }
 
-    builder.append(") VALUES (");
+    builder.append(") VALUES ");
+    int valuesStart = builder.length();
+    builder.append("(");
     for (int i = 0; i < columns.length; ++i) {
       if (i > 0)
         builder.append(", ");
@@ -237,6 +318,29 @@ public class DatabaseWriter {
     }
 
     builder.append(")");
+    if (rows > 1) {
+      String values = builder.substring(valuesStart);
+      for (int r = 1; r < rows; ++r)
+        builder.append(", ").append(values);
+    }
+    return builder.toString();
+  }
+
+  /**
+   * @return COPY statement reading csv from stdin
+   */
+  private String getCopyStatementSQL() {
+    StringBuilder builder = new StringBuilder();
+    builder.append("COPY ");
+    builder.append(bindingSet.getTableReference());
+    builder.append(" (");
+    String sep = "";
+    for (BindingItem column : columns) {
+      builder.append(sep);
+      builder.append(column.getColumnExpression());
+      sep = ", ";
+    }
+    builder.append(") FROM STDIN WITH (FORMAT csv)");
     return builder.toString();
   }
 
@@ -651,6 +755,14 @@ public class DatabaseWriter {
    */
   void insertRow(String[] columnValues) throws Exception {
     // log.trace("insertRow columnValues: " + Arrays.asList(columnValues));
+    if (bulkInsertMode == BulkInsertMode.COPY) {
+      copyRow(columnValues);
+      return;
+    }
+    if (bulkInsertMode == BulkInsertMode.MULTI_ROW) {
+      bulkInsertRow(columnValues);
+      return;
+    }
     try {
       if (insertStatement == null) {
         String sql = getInsertStatementSQL();
@@ -681,6 +793,123 @@ public class DatabaseWriter {
     }
   }
 
+  /**
+   * Binds the row into the multi-row insert statement, which is executed once all its rows are bound.
+   * The values are kept, as the remaining rows are written with a smaller statement in the end
+   * @param columnValues
+   * @throws Exception
+   */
+  private void bulkInsertRow(String[] columnValues) throws Exception {
+    try {
+      if (bulkInsertStatement == null) {
+        bulkInsertStatementRows = Math.max(1, Math.min(Math.min(maxBatchSize, MAX_BULK_ROWS), MAX_BULK_PARAMS / columns.length));
+        bulkInsertStatement = defaultConnection.prepareStatement(getInsertStatementSQL(bulkInsertStatementRows));
+        bulkInsertRows = new ArrayList<>(bulkInsertStatementRows);
+      }
+
+      // Caller may re-use the array for the next row
+      String[] values = columnValues.clone();
+      setValues(bulkInsertStatement, values, bulkInsertRows.size() * columns.length, false, false);
+      bulkInsertRows.add(values);
+
+      if (bulkInsertRows.size() >= bulkInsertStatementRows) {
+        int rowsAffected = bulkInsertStatement.executeUpdate();
+        bulkInsertStatement.clearParameters();
+        bulkInsertRows.clear();
+        log.trace("MULTI-ROW INSERT EXECUTED, "+rowsAffected+" rows inserted.");
+      }
+    }
+    catch (SQLException e) {
+      throw new SQLDetailException(getErrorMessage(getInsertStatementSQL(), columnValues), e);
+    }
+  }
+
+  /**
+   * Writes the rows bound so far but not yet executed with a statement matching their count
+   * @throws SQLException
+   */
+  private void flushBulkInsert() throws SQLException {
+    if (bulkInsertRows == null || bulkInsertRows.isEmpty())
+      return;
+    int rows = bulkInsertRows.size();
+    String sql = getInsertStatementSQL(rows);
+    PreparedStatement stm = null;
+    try {
+      stm = defaultConnection.prepareStatement(sql);
+      for (int r = 0; r < rows; ++r)
+        setValues(stm, bulkInsertRows.get(r), r * columns.length, false, false);
+      int rowsAffected = stm.executeUpdate();
+      log.trace("MULTI-ROW INSERT EXECUTED, "+rowsAffected+" rows inserted.");
+    }
+    catch (SQLException e) {
+      throw new SQLDetailException(getErrorMessage(getInsertStatementSQL(), bulkInsertRows.get(0)), e);
+    }
+    catch (Exception e) {
+      // values were already bound successfully once
+      throw new SQLException("Cannot bind values for multi-row insert", e);
+    }
+    finally {
+      Closer.closeAllSQLObjects(stm);
+      bulkInsertStatement.clearParameters();
+      bulkInsertRows.clear();
+    }
+  }
+
+  /**
+   * Appends the row as csv to the COPY data, which is sent once it becomes large
+   * @param columnValues
+   * @throws SQLException
+   */
+  private void copyRow(String[] columnValues) throws SQLException {
+    if (copyBuffer == null)
+      copyBuffer = new StringBuilder();
+    for (int i = 0; i < columns.length; ++i) {
+      if (i > 0)
+        copyBuffer.append(',');
+      String value = columnValues[i];
+      // Unquoted empty is NULL in csv format, in line with setValues()
+      if (value == null || value.length() == 0)
+        continue;
+      if (columnTypes[i] == Types.TIMESTAMP)
+        value = value.replace('T', ' ');
+      copyBuffer.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+    copyBuffer.append('\n');
+    copyRows++;
+    if (copyBuffer.length() >= MAX_COPY_CHARS)
+      flushCopy();
+  }
+
+  /**
+   * Sends the collected rows via the driver's CopyManager. We go via reflection to not depend on the PostgreSQL driver
+   * @throws SQLException
+   */
+  private void flushCopy() throws SQLException {
+    if (copyRows == 0)
+      return;
+    String sql = getCopyStatementSQL();
+    try {
+      Class<?> pgConnection = Class.forName("org.postgresql.PGConnection");
+      Object copyManager = pgConnection.getMethod("getCopyAPI").invoke(defaultConnection.unwrap(pgConnection));
+      Object rowsAffected = Class.forName("org.postgresql.copy.CopyManager").getMethod("copyIn", String.class, Reader.class)
+          .invoke(copyManager, sql, new StringReader(copyBuffer.toString()));
+      log.trace("COPY EXECUTED, "+rowsAffected+" rows inserted.");
+    }
+    catch (InvocationTargetException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof SQLException)
+        throw new SQLDetailException("Cannot execute statement\n" + sql + "\n columns: " + Arrays.toString(columns), (SQLException)cause);
+      throw new SQLException("Cannot execute statement\n" + sql, cause);
+    }
+    catch (ReflectiveOperationException e) {
+      throw new SQLException("PostgreSQL CopyManager not accessible for\n" + sql, e);
+    }
+    finally {
+      copyBuffer.setLength(0);
+      copyRows = 0;
+    }
+  }
+
   /**
    * @param columnValues to delete (WHERE part)
    * @throws Exception
@@ -730,6 +959,8 @@ public class DatabaseWriter {
         deleteBatchSize = 0;
         log.trace("...DELETE BATCH EXECUTED");
       }
+      flushBulkInsert();
+      flushCopy();
       if (insertStatement != null && insertBatchSize > 0) {
         log.trace("INSERT BATCH EXECUTE...#" + insertBatchSize);
         insertStatement.executeBatch();
@@ -773,7 +1004,10 @@ public class DatabaseWriter {
       }
       byteArrayInputStreams = null;
 
-      Closer.closeAllSQLObjects(deleteStatement, insertStatement, updateStatement, updateStatementExceptKeyCols);
+      Closer.closeAllSQLObjects(deleteStatement, insertStatement, updateStatement, updateStatementExceptKeyCols, bulkInsertStatement);
+      bulkInsertStatement = null;
+      bulkInsertRows = null;
+      copyBuffer = null;
       deleteStatement = null;
       updateStatement = null;
       insertStatement = null;
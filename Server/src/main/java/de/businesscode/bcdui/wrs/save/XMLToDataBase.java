@@ -25,6 +25,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.Location;
@@ -60,6 +61,7 @@ public class XMLToDataBase implements XMLEventConsumer {
 
   protected Bindings bindings = null;
   private Connection usedConnection = null;
+  private Map<String, Connection> managedConnections = null;
   private IRequestOptions options = null;
   private int maxBatchSize = 0;
 
@@ -80,6 +82,24 @@ public class XMLToDataBase implements XMLEventConsumer {
   protected final ArrayList<String> updateValues = new ArrayList<String>();
   protected final HashMap<String, Integer> bRefMap = new HashMap<>();
 
+  // Row buffers, set up once per header and reused for each row
+  private BindingItem[] headerColumns = null;
+  private Integer[] headerColumnTypes = null;
+  private String[] columnValuesBuffer = new String[0];
+  private String[] updateValuesBuffer = new String[0];
+  // With write processing callbacks, columns are taken in their binding's jdbc type and wrs:M may skip some of them
+  private Integer[] cbColumnTypes = null;
+  private BindingItem[] cbUpdateColumns = null;
+  private Integer[] cbUpdateColumnTypes = null;
+  private boolean[] cbSkipOnUpdate = null;
+  private String[] cbColumnValues = null, cbUpdateValues = null;
+  private String[] cbUpdateRowColumnValues = null, cbUpdateRowUpdateValues = null;
+  // What is handed over to the DatabaseWriter for the current row
+  private BindingItem[] rowColumns = null;
+  private Integer[] rowColumnTypes = null;
+  private String[] rowColumnValues = null, rowUpdateValues = null;
+  private BindingItem[] writerColumns = null;
+
   private DatabaseWriter databaseWriter = null;
 
   private TableNameSetter tableNameSetter = new TableNameSetter();
@@ -118,7 +138,24 @@ public class XMLToDataBase implements XMLEventConsumer {
    * @return the defaultConnection
    */
   private Connection getDefaultManagedConnection() throws Exception {
-    return options.getManagedConnection(null);
+    return getManagedConnection(null);
+  }
+
+  /**
+   * Connections acquired by the caller, used when we run on a different thread than the one the managed connections are bound to
+   * @param managedConnectionsPr by jdbcResourceName, BindingSet.DEFAULT_DATABASE_SOURCENAME for the default connection
+   */
+  void setManagedConnections(Map<String, Connection> managedConnectionsPr) {
+    this.managedConnections = managedConnectionsPr;
+  }
+
+  private Connection getManagedConnection(String dbSourceName) throws Exception {
+    if (managedConnections == null)
+      return options.getManagedConnection(dbSourceName);
+    Connection con = managedConnections.get(dbSourceName == null ? BindingSet.DEFAULT_DATABASE_SOURCENAME : dbSourceName);
+    if (con == null)
+      throw new IllegalStateException("No connection was provided for '" + dbSourceName + "'");
+    return con;
   }
 
   @Override
@@ -303,83 +340,145 @@ public class XMLToDataBase implements XMLEventConsumer {
     int i = 0;
     for (BindingItem b : this.columns)
       bRefMap.put(b.getId(),  Integer.valueOf(i++));
+
+    // from now on, columns and columnTypes are only changed temporarily by callbacks within a row
+    headerColumns = this.columns.toArray(new BindingItem[this.columns.size()]);
+    headerColumnTypes = this.columnTypes.toArray(new Integer[this.columnTypes.size()]);
+    if (!this.writeProcessingCallbacks.isEmpty())
+      initCallbackRowBuffers();
+  }
+
+  /**
+   * Prepares the buffers used by {@link #processEndRow(String)}, columns ignored on update are derived
+   * once per header, as they are determined during endHeader of the callbacks
+   */
+  private void initCallbackRowBuffers() {
+    HashSet<String> skippedBRefs = new HashSet<>();
+    for(WriteProcessingCallback cb : this.writeProcessingCallbacks) {
+      if (cb instanceof WrsModificationCallback)
+        skippedBRefs.addAll(((WrsModificationCallback) cb).getIgnoreUpdateBRefs());
+    }
+
+    int colCount = headerColumns.length;
+    cbColumnTypes = new Integer[colCount];
+    cbSkipOnUpdate = new boolean[colCount];
+    int updateColCount = 0;
+    for (int i = 0; i < colCount; i++) {
+      cbColumnTypes[i] = headerColumns[i].getJDBCDataType();
+      cbSkipOnUpdate[i] = skippedBRefs.contains(headerColumns[i].getId());
+      if (!cbSkipOnUpdate[i])
+        updateColCount++;
+    }
+    cbUpdateColumns = new BindingItem[updateColCount];
+    cbUpdateColumnTypes = new Integer[updateColCount];
+    for (int i = 0, u = 0; i < colCount; i++) {
+      if (!cbSkipOnUpdate[i]) {
+        cbUpdateColumns[u] = headerColumns[i];
+        cbUpdateColumnTypes[u++] = cbColumnTypes[i];
+      }
+    }
+    cbColumnValues = new String[colCount];
+    cbUpdateValues = new String[colCount];
+    cbUpdateRowColumnValues = new String[updateColCount];
+    cbUpdateRowUpdateValues = new String[updateColCount];
   }
 
   /**
    * the row has been read and values parsed, here we check if binding has defined
    * WriteProcessing and apply them
+   * The result is provided in rowColumns, rowColumnTypes, rowColumnValues and rowUpdateValues
    */
   private void processEndRow(String rowElementName) throws Exception {
     logger.debug("write processing callbacks found, delegating processEndRow.");
 
-    // keep current values (possibly modified via endHeader) as backup
-    ArrayList<BindingItem> temp_columns = new ArrayList<>(this.columns);
-    ArrayList<String> temp_columnValues = new ArrayList<>(this.columnValues);
-    ArrayList<String> temp_updateValues = new ArrayList<>(this.updateValues);
-    
-    // pad possible missing entries so that values match column count
-    // endHeader might have added new columns like updatedBy etc.
-    while (temp_columns.size() > temp_columnValues.size())
-      temp_columnValues.add(null);
-    while (temp_columns.size() > temp_updateValues.size())
-      temp_updateValues.add(null);
-
-    // skippedById bRefs will be collected here
-    HashSet<String> skippedBRefs = new HashSet<>();
+    // start with the values as read, padded with null for columns possibly added by endHeader (like updatedBy etc.)
+    fillBuffer(this.columnValues, cbColumnValues);
+    fillBuffer(this.updateValues, cbUpdateValues);
 
     // run through all callbacks
     for(WriteProcessingCallback cb : this.writeProcessingCallbacks){
 
-      // get update-skipped bRefs which should not be part of the final sent data 
-      if (cb instanceof WrsModificationCallback)
-        skippedBRefs.addAll(((WrsModificationCallback) cb).getIgnoreUpdateBRefs());
-
       // perform current callbacks endDataRow action
       cb.endDataRow(WriteProcessingCallback.ROW_TYPE.valueOf(rowElementName), this.updateValues, this.columnValues);
 
       // endDataRow might have modified columns, updateValues, columnValues (which is valid only for the current callback)
       // so we need to sort back the values by bRef lookup to get a full collection of data per column again
       for (int curIdx = 0; curIdx < this.columns.size(); curIdx++) {
-        
+
         // bRefMap was generated after all cb did their endHeader job, so it should contain all possible bRefs/positions
         Integer idx = bRefMap.get(this.columns.get(curIdx).getId());
         if (idx != null) {
           // this.columns and this.update/column Values don't need to have the same amount of items
-          // (see above, we also padded the temp_* ArrayLists, so we need to check if we have data for the column
           if (curIdx < this.columnValues.size())
-            temp_columnValues.set(idx, this.columnValues.get(curIdx));
+            cbColumnValues[idx] = this.columnValues.get(curIdx);
           if (curIdx < this.updateValues.size())
-            temp_updateValues.set(idx, this.updateValues.get(curIdx));
+            cbUpdateValues[idx] = this.updateValues.get(curIdx);
         }
       }
 
-      // replace arrays again with enriched data so that the next modifier can work with it
-      this.columns.clear(); for (BindingItem b : temp_columns) this.columns.add(b);
-      this.updateValues.clear(); for (String u : temp_updateValues) this.updateValues.add(u);
-      this.columnValues.clear(); for (String c : temp_columnValues) this.columnValues.add(c);
+      // replace lists again with enriched data so that the next modifier can work with it
+      if (!isSame(this.columns, headerColumns)) {
+        this.columns.clear(); for (BindingItem b : headerColumns) this.columns.add(b);
+      }
+      this.updateValues.clear(); for (String u : cbUpdateValues) this.updateValues.add(u);
+      this.columnValues.clear(); for (String c : cbColumnValues) this.columnValues.add(c);
 
     } // next callback
 
-    // after all callbacks did their job, run over all columns again and filter out skipped columns
-    temp_columns.clear();
-    temp_columnValues.clear();
-    temp_updateValues.clear();
-    for (int i = 0; i < this.columns.size(); i++ ) {
-      boolean doSkip = (WriteProcessingCallback.ROW_TYPE.valueOf(rowElementName) == ROW_TYPE.M) && skippedBRefs.contains(this.columns.get(i).getId());
-      if (!doSkip) {
-        temp_columns.add(this.columns.get(i));
-        temp_columnValues.add(this.columnValues.get(i));
-        temp_updateValues.add(this.updateValues.get(i));
+    // columnTypes may have been touched by a callback as well
+    if (!isSame(this.columnTypes, headerColumnTypes)) {
+      this.columnTypes.clear(); for (Integer t : headerColumnTypes) this.columnTypes.add(t);
+    }
+
+    // after all callbacks did their job, filter out columns ignored on update
+    if (WriteProcessingCallback.ROW_TYPE.valueOf(rowElementName) == ROW_TYPE.M && cbUpdateColumns.length != headerColumns.length) {
+      for (int i = 0, u = 0; i < headerColumns.length; i++ ) {
+        if (!cbSkipOnUpdate[i]) {
+          cbUpdateRowColumnValues[u] = cbColumnValues[i];
+          cbUpdateRowUpdateValues[u++] = cbUpdateValues[i];
+        }
       }
+      rowColumns = cbUpdateColumns;
+      rowColumnTypes = cbUpdateColumnTypes;
+      rowColumnValues = cbUpdateRowColumnValues;
+      rowUpdateValues = cbUpdateRowUpdateValues;
+    } else {
+      rowColumns = headerColumns;
+      rowColumnTypes = cbColumnTypes;
+      rowColumnValues = cbColumnValues;
+      rowUpdateValues = cbUpdateValues;
     }
+  }
+
+  /**
+   * Copies values into buffer, padding with null or cutting off values exceeding the buffer
+   */
+  private static void fillBuffer(List<String> values, String[] buffer) {
+    int size = Math.min(values.size(), buffer.length);
+    for (int i = 0; i < size; i++)
+      buffer[i] = values.get(i);
+    for (int i = size; i < buffer.length; i++)
+      buffer[i] = null;
+  }
 
-    // replace arrays again with possibly filtered update columns
-    this.columns.clear(); for (BindingItem b : temp_columns) this.columns.add(b);
-    this.updateValues.clear(); for (String u : temp_updateValues) this.updateValues.add(u);
-    this.columnValues.clear(); for (String c : temp_columnValues) this.columnValues.add(c);
+  /**
+   * @return values as array, reusing buffer if it has the right size
+   */
+  private static String[] toArray(List<String> values, String[] buffer) {
+    return values.toArray(buffer.length == values.size() ? buffer : new String[values.size()]);
+  }
 
-    // and update jdbc types (since we might removed columns in between)
-    this.columnTypes.clear(); for (BindingItem b : temp_columns) this.columnTypes.add(b.getJDBCDataType());
+  /**
+   * @return true if the list holds exactly the items of the array
+   */
+  private static boolean isSame(List<?> list, Object[] array) {
+    if (list.size() != array.length)
+      return false;
+    for (int i = 0; i < array.length; i++) {
+      if (list.get(i) != array[i])
+        return false;
+    }
+    return true;
   }
 
   /**
@@ -404,60 +503,54 @@ public class XMLToDataBase implements XMLEventConsumer {
     // remember last row (gets reset to "" for a new wrs)
     this.lastRowElementName = rowElementName;
 
-    // remember initial state
-    ArrayList<BindingItem> bak_columns = new ArrayList<>(this.columns);
-    ArrayList<String> bak_columnValues = new ArrayList<>(this.columnValues);
-    ArrayList<String> bak_updateValues = new ArrayList<>(this.updateValues);
-    ArrayList<Integer> bak_columnTypes = new ArrayList<>(this.columnTypes);
-
     if(!this.writeProcessingCallbacks.isEmpty()) {
-      // this will modify columns, columnTypes, columnValues and updateValues
+      // this will modify columns, columnTypes, columnValues and updateValues only temporarily
       processEndRow(rowElementNameParam);
+    } else {
+      rowColumns = headerColumns;
+      rowColumnTypes = headerColumnTypes;
+      rowColumnValues = columnValuesBuffer = toArray(columnValues, columnValuesBuffer);
+      rowUpdateValues = updateValuesBuffer = toArray(updateValues, updateValuesBuffer);
     }
 
-
     if (databaseWriter == null) {
       String dbSourceName = bindingSet.getJdbcResourceName();
       if (dbSourceName != null && !dbSourceName.equals(BindingSet.DEFAULT_DATABASE_SOURCENAME)) {
-        usedConnection = options.getManagedConnection(dbSourceName);
+        usedConnection = getManagedConnection(dbSourceName);
       }
       Connection con = usedConnection != null ? usedConnection : getDefaultManagedConnection();
 
-      databaseWriter = new DatabaseWriter(bindingSet, con, columns.toArray(new BindingItem[columns.size()]), columnTypes.toArray(new Integer[columnTypes.size()]), keyColumnNames, maxBatchSize);
+      databaseWriter = new DatabaseWriter(bindingSet, con, rowColumns, rowColumnTypes, keyColumnNames, maxBatchSize);
+      writerColumns = rowColumns;
       if (listener != null) {
         listener.actionPerformed(new SaveEvent(con, SaveEventState.StartSaving));
       }
     }
-    else if(!this.writeProcessingCallbacks.isEmpty()) {
+    else if(writerColumns != rowColumns) {
       // columns and columnTypes might have changed in the callback (e.g. wrs:I versus wrs:M), so we need to set the new ones
-      // even if this is set per row, within databaseWrite, sql insert and modify generation will be only done once per type
-      databaseWriter.updateColumnsAndTypes(columns.toArray(new BindingItem[columns.size()]), columnTypes.toArray(new Integer[columnTypes.size()]), keyColumnNames);
+      // within databaseWrite, sql insert and modify generation will be only done once per type
+      databaseWriter.updateColumnsAndTypes(rowColumns, rowColumnTypes, keyColumnNames);
+      writerColumns = rowColumns;
     }
 
     if (rowElementNameParam.equals("I")) {
       modifiedRowCount++;
 
-      databaseWriter.insertRow(updateValues.toArray(new String[updateValues.size()]));
+      databaseWriter.insertRow(rowUpdateValues);
 
     }
     else if (rowElementNameParam.equals("M")) {
       modifiedRowCount++;
 
-      databaseWriter.updateRow(columnValues.toArray(new String[columnValues.size()]), updateValues.toArray(new String[updateValues.size()]));
+      databaseWriter.updateRow(rowColumnValues, rowUpdateValues);
 
     }
     else if (rowElementNameParam.equals("D")) {
       modifiedRowCount++;
 
-      databaseWriter.deleteRow(updateValues.toArray(new String[updateValues.size()]));
+      databaseWriter.deleteRow(rowUpdateValues);
 
     }
-
-    // restore original state
-    this.columns.clear(); for (BindingItem b : bak_columns) this.columns.add(b);
-    this.updateValues.clear(); for (String u : bak_updateValues) this.updateValues.add(u);
-    this.columnValues.clear(); for (String c : bak_columnValues) this.columnValues.add(c);
-    this.columnTypes.clear(); for (Integer t : bak_columnTypes) this.columnTypes.add(t);
   }
 
   /**
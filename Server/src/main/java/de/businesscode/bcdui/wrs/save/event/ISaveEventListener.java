@@ -16,6 +16,10 @@
 package de.businesscode.bcdui.wrs.save.event;
 
 
+/**
+ * Informed about the steps of writing wrs:Wrs documents to the database.
+ * If bcdui/wrs/save/parallel is true, {@link #actionPerformed(SaveEvent)} may be called concurrently from several threads, so implementations must be thread-safe.
+ */
 public interface ISaveEventListener {
 
   /**
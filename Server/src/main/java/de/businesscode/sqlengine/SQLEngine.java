@@ -15,7 +15,9 @@
 */
 package de.businesscode.sqlengine;
 
+import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -23,17 +25,25 @@ import java.util.Map;
 import java.util.AbstractMap;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.context.Context;
+import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.runtime.parser.ParseException;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
 import org.slf4j.helpers.NOPLogger;
 import de.businesscode.bcdui.binding.BindingItem;
 import de.businesscode.bcdui.binding.Bindings;
 import de.businesscode.bcdui.binding.StandardBindingSet;
+import de.businesscode.bcdui.toolbox.config.BareConfiguration;
 import de.businesscode.sqlengine.context.BindingSetContextObject;
 import de.businesscode.sqlengine.context.BindingsContextObject;
 import de.businesscode.sqlengine.context.BindingsLookupContextObject;
@@ -49,16 +59,27 @@ import de.businesscode.sqlengine.context.ParamsContextObject;
  *   using BindingsLookupContextObject and BindingSetLookupContextObject
  * - In phase 2 it does then know the concrete BindingSet and BindingItem and can output the appropriate table and column names,
  *   using BindingsContextObject and BindingSetContextObject
+ *
+ * Parsed templates and the result of phase 1 are cached per sql text, see {@link #PARAM_MAX_CACHED_TEMPLATES}.
+ * When no additional props are given, also the result of phase 2 is cached until the Bindings are reloaded
  */
 public class SQLEngine {
-   private VelocityEngine velocityEngine;
+   public static final String PARAM_MAX_CACHED_TEMPLATES = "bcdui/sqlEngine/maxCachedTemplates";
+   public static final int DEFAULT_MAX_CACHED_TEMPLATES = 1000;
+
+   private static final class Holder {
+      static final RuntimeInstance runtime = createRuntime();
+      static final int maxCachedTemplates = BareConfiguration.getInstance().getConfigurationParameter(PARAM_MAX_CACHED_TEMPLATES, DEFAULT_MAX_CACHED_TEMPLATES);
+   }
+   private static final Map<String, CompiledSql> compiledSqls = new ConcurrentHashMap<String, CompiledSql>();
+
    private Set<String> requestedBindingSets = new HashSet<String>();
    private Set<StandardBindingSet> resultingBindingSets = new HashSet<StandardBindingSet>();
    private final List<BindingItem> selectedBindigItemsInOrder = new LinkedList<BindingItem>();
    private final List<BindingItem> allBindigItemsInOrder = new LinkedList<BindingItem>();
-   private final Pattern oldFmt = Pattern.compile("(\\$\\w+\\.\\w+)(-)");
-   private final Logger log = LogManager.getLogger(getClass());
-   private final String compatiblityError = "Illegal Velocity variable name in: {}";
+   private static final Pattern oldFmt = Pattern.compile("(\\$\\w+\\.\\w+)(-)");
+   private static final Logger log = LogManager.getLogger(SQLEngine.class);
+   private static final String compatiblityError = "Illegal Velocity variable name in: {}";
 
    /**
     * Getter for a list of all BindindItems used in this sql and mentioned before the table name
@@ -155,8 +176,17 @@ public class SQLEngine {
     */
    public String transform(String sql, Bindings bindings, Map<String, Object> additionalProps) 
    {
-      // Phase 1 - lookup for used binding set name / binding item names combination
-      BindingsLookupContextObject bindingsLookup = lookupBindingsReferences(sql);
+      CompiledSql compiledSql = getCompiledSql(sql);
+
+      // Without additional props the result only depends on the sql and the Bindings
+      Rendered rendered = compiledSql.rendered;
+      if( additionalProps == null && rendered != null && rendered.bindings == bindings ) {
+        rendered.provideInfo(this);
+        return rendered.sql;
+      }
+
+      // Phase 1 - lookup for used binding set name / binding item names combination, this is cached with the template
+      BindingsLookupContextObject bindingsLookup = compiledSql.getBindingsLookup();
 
       VelocityContext context = new VelocityContext();
       BindingsContextObject bindingsContextObject = new BindingsContextObject(bindings, bindingsLookup);
@@ -169,20 +199,15 @@ public class SQLEngine {
           context.put(k, v);
         });
       }
-      StringWriter result = new StringWriter();
-      String pSql = oldFmt.matcher(sql).replaceAll("$1_");
-      if (! pSql.equals(sql))
-        log.warn(compatiblityError, sql);
-      getVelocityEngine().evaluate(context, result, "sql", pSql);
+      String result = compiledSql.merge(context);
 
       // Provide some information to our user
-      Map<String, BindingSetContextObject> bindingMap = bindingsContextObject.getUsedBindings();
-      bindingMap.keySet().stream().forEach( requestedBindingSets::add );
-      bindingMap.values().stream().map( p->p.getBindingSet() ).forEach( resultingBindingSets::add );
-      bindingMap.values().stream().map( p->p.getSelectedBindingItemsInOrder() ).flatMap(l->l.stream() ).forEach( selectedBindigItemsInOrder::add );
-      bindingMap.values().stream().map( p->p.getAllBindingItemsInOrder() ).flatMap(l->l.stream() ).forEach( allBindigItemsInOrder::add );
+      rendered = new Rendered(bindings, result, bindingsContextObject.getUsedBindings());
+      rendered.provideInfo(this);
+      if( additionalProps == null )
+        compiledSql.rendered = rendered;
 
-      return result.toString();
+      return result;
    }
 
 /**
@@ -212,52 +237,117 @@ public class SQLEngine {
       ParamsContextObject mapToQuestionMark = new ParamsContextObject(multiplicities);
       context.put(keyword, mapToQuestionMark);
 
-      StringWriter result = new StringWriter();
-      String pSql = oldFmt.matcher(sql).replaceAll("$1_");
-      if (! pSql.equals(sql))
-        log.warn(compatiblityError, sql);
-      getVelocityEngine().evaluate(context, result, "sql", pSql);
+      String result = getCompiledSql(sql).merge(context);
 
       substitutes.addAll(mapToQuestionMark.getRequestedKeys());
-      return result.toString();
+      return result;
    }
 
 
    /**
-    * This is phase one -> derive the the binding set name / used binding items combination
-    *
     * @param sql
-    * @return not an transformed sql but a map with binding set name to BindingSetLookupContextObject, which is in essence
-    * the combination mentioned above
+    * @return the parsed template of the sql, taken from the cache if possible
     */
-   private BindingsLookupContextObject lookupBindingsReferences(String sql) {
-      VelocityContext context = new VelocityContext();
-      BindingsLookupContextObject bindingsObject = new BindingsLookupContextObject();
-      context.put("bindings", bindingsObject);
-      //
-      StringWriter result = new StringWriter();
-      String pSql = oldFmt.matcher(sql).replaceAll("$1_");
-      if (! pSql.equals(sql))
-        log.warn(compatiblityError, sql);
-      getVelocityEngine().evaluate(context, result, "sql", pSql);
-      //
-      return bindingsObject;
+   private static CompiledSql getCompiledSql(String sql) {
+      CompiledSql compiledSql = compiledSqls.get(sql);
+      if( compiledSql == null ) {
+        compiledSql = new CompiledSql(sql);
+        if( compiledSqls.size() >= Holder.maxCachedTemplates )
+          compiledSqls.clear();
+        compiledSqls.put(sql, compiledSql);
+      }
+      return compiledSql;
+   }
+
+   /**
+    * Clears the cached templates, usually not needed as the rendered sql is bound to the Bindings instance it was created with
+    */
+   public static void clearCache() {
+      compiledSqls.clear();
    }
 
    /**
-    * @return the velocityEngine
+    * @return the shared runtime, which is thread-safe once initialized
     */
-   private VelocityEngine getVelocityEngine() {
-      if (velocityEngine == null) {
-         velocityEngine = new VelocityEngine();
-         //
-         // setup the velocityEngine
-         //
-         // logging
-         velocityEngine.setProperty(VelocityEngine.RUNTIME_LOG_INSTANCE, NOPLogger.NOP_LOGGER); // no logging
-         //
-         velocityEngine.init();
+   private static RuntimeInstance createRuntime() {
+      RuntimeInstance runtime = new RuntimeInstance();
+      runtime.setProperty(RuntimeConstants.RUNTIME_LOG_INSTANCE, NOPLogger.NOP_LOGGER); // no logging
+      runtime.init();
+      return runtime;
+   }
+
+   /**
+    * A parsed sql template together with the derived phase 1 information
+    */
+   private static final class CompiledSql {
+      private final Template template;
+      private volatile BindingsLookupContextObject bindingsLookup;
+      private volatile Rendered rendered;
+
+      CompiledSql(String sql) {
+        String pSql = oldFmt.matcher(sql).replaceAll("$1_");
+        if (! pSql.equals(sql))
+          log.warn(compatiblityError, sql);
+        template = new Template();
+        template.setRuntimeServices(Holder.runtime);
+        template.setName("sql");
+        try {
+          SimpleNode nodeTree = Holder.runtime.parse(new StringReader(pSql), template);
+          template.setData(nodeTree);
+          template.initDocument();
+        } catch (ParseException e) {
+          throw new ParseErrorException(e, null);
+        }
+      }
+
+      String merge(Context context) {
+        StringWriter result = new StringWriter();
+        template.merge(context, result);
+        return result.toString();
+      }
+
+      /**
+       * This is phase one -> derive the the binding set name / used binding items combination
+       * It does not depend on additional props or the Bindings and is only read afterwards, so we can share it
+       */
+      BindingsLookupContextObject getBindingsLookup() {
+        BindingsLookupContextObject lookup = bindingsLookup;
+        if( lookup == null ) {
+          lookup = new BindingsLookupContextObject();
+          VelocityContext context = new VelocityContext();
+          context.put("bindings", lookup);
+          merge(context);
+          bindingsLookup = lookup;
+        }
+        return lookup;
+      }
+   }
+
+   /**
+    * Result of phase 2 together with the information about the BindingSets and BindingItems used
+    */
+   private static final class Rendered {
+      private final Bindings bindings;
+      private final String sql;
+      private final List<String> requestedBindingSets;
+      private final List<StandardBindingSet> resultingBindingSets;
+      private final List<BindingItem> selectedBindingItemsInOrder = new ArrayList<BindingItem>();
+      private final List<BindingItem> allBindingItemsInOrder = new ArrayList<BindingItem>();
+
+      Rendered(Bindings bindings, String sql, Map<String, BindingSetContextObject> bindingMap) {
+        this.bindings = bindings;
+        this.sql = sql;
+        requestedBindingSets = new ArrayList<String>(bindingMap.keySet());
+        resultingBindingSets = bindingMap.values().stream().map( p->p.getBindingSet() ).collect(Collectors.toList());
+        bindingMap.values().stream().map( p->p.getSelectedBindingItemsInOrder() ).flatMap(l->l.stream() ).forEach( selectedBindingItemsInOrder::add );
+        bindingMap.values().stream().map( p->p.getAllBindingItemsInOrder() ).flatMap(l->l.stream() ).forEach( allBindingItemsInOrder::add );
+      }
+
+      void provideInfo(SQLEngine engine) {
+        engine.requestedBindingSets.addAll(requestedBindingSets);
+        engine.resultingBindingSets.addAll(resultingBindingSets);
+        engine.selectedBindigItemsInOrder.addAll(selectedBindingItemsInOrder);
+        engine.allBindigItemsInOrder.addAll(allBindingItemsInOrder);
       }
-      return velocityEngine;
    }
 }
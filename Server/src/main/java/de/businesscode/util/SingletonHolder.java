@@ -56,7 +56,7 @@ public abstract class SingletonHolder<T> {
   // track to enable explicit cleanup
   private static final List<SingletonHolder<?>> holders = new LinkedList<SingletonHolder<?>>();
 
-  private T instance;
+  private volatile T instance;
 
   /**
    * implement to return an instance of type T
@@ -69,10 +69,11 @@ public abstract class SingletonHolder<T> {
    * @return instance of type T
    */
   public T get() {
-    /*
-     * TODO: we could also switch to double-checked locking to gain slightly more performance
-     * by resigning the synchronized method
-     */
+    // double-checked locking, as some singletons like SqlToDatabaseLogger are read on hot paths
+    T result = instance;
+    if (result != null)
+      return result;
+
     synchronized (holders) {
 
       if (instance == null) {
@@ -26,10 +26,13 @@ import java.sql.ResultSet;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 import org.apache.commons.io.IOUtils;
@@ -50,7 +53,7 @@ import de.businesscode.bcdui.web.filters.RequestLifeCycleFilter;
 public class DatabaseCompatibility
 {
   static private final Logger log = LogManager.getLogger(DatabaseCompatibility.class);
-  private static DatabaseCompatibility singleton = null;
+  private static volatile DatabaseCompatibility singleton = null;
 
   // Set of database-specific reserved words, which are often used in column expressions and usually not referring to a column
   // Used for knowing, where to add table prefixes in SQL
@@ -62,7 +65,10 @@ public class DatabaseCompatibility
   protected final Set<String> sqlKeyWordsSqlServer;
   protected final Set<String> sqlKeyWordsSnowflake;
   protected final Set<String> sqlKeyWordsGeneric;
-  protected final Map<String, String> databaseProduct = new HashMap<String, String>();
+  protected final Map<String, String> databaseProduct = Collections.synchronizedMap(new HashMap<String, String>());
+  // Resolved once per jdbcResourceName, the null jdbcResourceName (default data source) is kept under DEFAULT_DIALECT_KEY
+  protected final Map<String, Dialect> dialects = new ConcurrentHashMap<String, Dialect>();
+  private static final String DEFAULT_DIALECT_KEY = "";
 
   protected final Map<String, String[]> sqlServerCalcFktMapping;
   protected final Map<String, String[]> oracleCalcFktMapping;
@@ -89,19 +95,24 @@ public class DatabaseCompatibility
    * @return
    * @throws BindingException
    */
-  public static synchronized DatabaseCompatibility getInstance() throws RuntimeException
+  public static DatabaseCompatibility getInstance() throws RuntimeException
   {
-    if( DatabaseCompatibility.singleton == null ) {
-      Class<? extends DatabaseCompatibility> clazz = (Class<? extends DatabaseCompatibility>) Configuration.getClassoption(Configuration.OPT_CLASSES.DATABASECOMPATIBILITY);
-      try {
-        DatabaseCompatibility.singleton = clazz.getDeclaredConstructor().newInstance();
-      } catch (InstantiationException | NoSuchMethodException | IllegalAccessException e) {
-        throw new RuntimeException("No class found for DatabaseCompatibility", e);
-      } catch (InvocationTargetException e) {
-        throw new RuntimeException("No class found for 'DatabaseCompatibility'", e.getCause());
+    DatabaseCompatibility instance = DatabaseCompatibility.singleton;
+    if( instance != null )
+      return instance;
+    synchronized( DatabaseCompatibility.class ) {
+      if( DatabaseCompatibility.singleton == null ) {
+        Class<? extends DatabaseCompatibility> clazz = (Class<? extends DatabaseCompatibility>) Configuration.getClassoption(Configuration.OPT_CLASSES.DATABASECOMPATIBILITY);
+        try {
+          DatabaseCompatibility.singleton = clazz.getDeclaredConstructor().newInstance();
+        } catch (InstantiationException | NoSuchMethodException | IllegalAccessException e) {
+          throw new RuntimeException("No class found for DatabaseCompatibility", e);
+        } catch (InvocationTargetException e) {
+          throw new RuntimeException("No class found for 'DatabaseCompatibility'", e.getCause());
+        }
       }
+      return DatabaseCompatibility.singleton;
     }
-    return DatabaseCompatibility.singleton;
   }
 
 
@@ -119,22 +130,7 @@ public class DatabaseCompatibility
    */
   public Set<String>getReservedDBWords(String jdbcResourceName)
   {
-    try {
-      String product = getDatabaseProductNameLC(jdbcResourceName);
-      if( product.contains("oracle") )
-        return sqlKeyWordsOracle;
-      else if( product.contains("mysql") )
-        return sqlKeyWordsMysql;
-      else if( product.contains("microsoft sql server") )
-        return sqlKeyWordsSqlServer;
-      else if( product.contains("postgresql") )
-        return sqlKeyWordsPostgres;
-      else if( product.contains("snowflake") )
-        return sqlKeyWordsSnowflake;
-    } catch (Exception e) {
-      log.error(e, e);
-    }
-    return sqlKeyWordsGeneric;
+    return getDialect(jdbcResourceName).getReservedDBWords();
   }
 
   /**
@@ -144,8 +140,7 @@ public class DatabaseCompatibility
    */
   public boolean dbNeedsColumnListForRecursiveWithClause(String jdbcResourceName)
   {
-    String product = getDatabaseProductNameLC(jdbcResourceName);
-    return product.contains("oracle") || product.contains("redshift") || product.contains("h2");
+    return getDialect(jdbcResourceName).needsColumnListForRecursiveWithClause;
   }
 
   /**
@@ -154,8 +149,7 @@ public class DatabaseCompatibility
    * @return
    */
   public boolean dbNeedsRecursiveInWithClause(String jdbcResourceName) {
-    String product = getDatabaseProductNameLC(jdbcResourceName);
-    return ! (product.contains("oracle") || product.contains("microsoft sql server"));
+    return getDialect(jdbcResourceName).needsRecursiveInWithClause;
   }
 
   /**
@@ -164,9 +158,7 @@ public class DatabaseCompatibility
    * @return
    */
   public boolean dbSupportsGroupingSets(String jdbcResourceName) {
-    String product = getDatabaseProductNameLC(jdbcResourceName);
-    return product.contains("oracle") || product.contains("microsoft sql server") || product.contains("postgresql")
-        || product.contains("snowflake") || product.contains("duckdb") || product.contains("redshift");
+    return getDialect(jdbcResourceName).supportsGroupingSets;
   }
 
   /**
@@ -183,7 +175,7 @@ public class DatabaseCompatibility
    * @return
    */
   public String paginationClause(String jdbcResourceName, int rowStart, int rowEnd, Supplier<String> getOrderBy) {
-    String product = getDatabaseProductNameLC(jdbcResourceName);
+    Pagination pagination = getDialect(jdbcResourceName).pagination;
     int fetch;
     if( rowEnd == -1 ) fetch = -1;
     else if( (rowEnd > 0 && rowStart > rowEnd) || rowEnd == 0 ) return ""; // Corresponds to metadata request, handled with WHERE 1 = 0  in SqlFromSubSelect.generateWhereClause()
@@ -192,15 +184,15 @@ public class DatabaseCompatibility
     int offset = Math.max(rowStart - 1, 0);
 
     String clause = "";
-    if( product.contains("mysql") || product.contains("redshift") ) {
+    if( pagination == Pagination.LIMIT_OFFSET ) {
       if( fetch != -1 ) clause += " LIMIT "+fetch;
       if( rowStart > 0 ) clause += " OFFSET "+offset;
     }
-    else if( product.contains("teradata") && (offset > 0 || fetch != -1) ) {
+    else if( pagination == Pagination.QUALIFY && (offset > 0 || fetch != -1) ) {
       String keyColList = getOrderBy.get();
       clause = " QUALIFY ROW_NUMBER() OVER("+keyColList+") BETWEEN "+rowStart+" AND "+rowEnd;
     }
-    else if( product.contains("microsoft sql server") && (offset > 0 || fetch != -1) ) {
+    else if( pagination == Pagination.OFFSET_REQUIRED && (offset > 0 || fetch != -1) ) {
       clause += " OFFSET "+offset+" ROWS";                            // Required even if only FETCh is limited
       if( fetch != -1 ) clause += " FETCH NEXT "+fetch+" ROWS ONLY";
     }
@@ -219,8 +211,7 @@ public class DatabaseCompatibility
    * @return
    */
   public String dbLikeEscapeBackslash(String jdbcResourceName) {
-    String product = getDatabaseProductNameLC(jdbcResourceName);
-    return product.contains("redshift") ? "" : product.contains("snowflake") ? " ESCAPE '\\\\'" : " ESCAPE '\\'";
+    return getDialect(jdbcResourceName).likeEscapeBackslash;
   }
 
   /**
@@ -228,7 +219,7 @@ public class DatabaseCompatibility
    * @return
    */
   public boolean dbNeedsVarcharCastForConcatInTopN(String jdbcResourceName) {
-    return getDatabaseProductNameLC(jdbcResourceName).contains("snowflake");
+    return getDialect(jdbcResourceName).needsVarcharCastForConcatInTopN;
   }
 
   /**
@@ -239,8 +230,7 @@ public class DatabaseCompatibility
    */
   public int dbOrderByNullsLast( String jdbcResourceName, String colExpr, boolean isDesc, StringBuffer sql )
   {
-    String product = getDatabaseProductNameLC(jdbcResourceName);
-    if( product.contains("oracle") || product.contains("redshift") || product.contains("snowflake") || product.contains("postgresql") ) {
+    if( getDialect(jdbcResourceName).supportsNullsLast ) {
       if( isDesc ) {
         sql.append( colExpr + " DESC NULLS LAST " );
       } else {
@@ -267,7 +257,7 @@ public class DatabaseCompatibility
    */
   public String castToVarchar(String jdbcResourceName, int origJdbcDataType, String expr)
   {
-    String product = getDatabaseProductNameLC(jdbcResourceName);
+    String product = getDialect(jdbcResourceName).productNameForMatching();
     if( origJdbcDataType == Types.CHAR || origJdbcDataType == Types.VARCHAR )
       return expr;
     // Conversion via CAST is ok for all types for all databases when ansi date is set as default.
@@ -299,16 +289,7 @@ public class DatabaseCompatibility
 
   public Map<String, String[]> getCalcFktMapping( String jdbcResourceName )
   {
-    String product = getDatabaseProductNameLC(jdbcResourceName);
-    if( product.contains("microsoft sql server") )
-      return sqlServerCalcFktMapping;
-    if( product.contains("mysql") )
-      return mysqlCalcFktMapping;
-    if( product.contains("redshift") )
-      return redshiftCalcFktMapping;
-    if ( product.contains("snowflake"))
-      return snowflakeCalcFktMapping;
-    return oracleCalcFktMapping;
+    return getDialect(jdbcResourceName).getCalcFktMapping();
   }
 
   /**
@@ -319,10 +300,7 @@ public class DatabaseCompatibility
   {
     if(jdbcResourceName == null) return aggregationMappingGeneric;
 
-    String product = getDatabaseProductNameLC(jdbcResourceName);
-    if( product.contains("mysql") )
-      return aggregationMappingMySql;
-    return aggregationMappingGeneric;
+    return getDialect(jdbcResourceName).getAggrFktMapping();
   }
 
   /**
@@ -341,10 +319,7 @@ public class DatabaseCompatibility
    * @return
    */
   public String getJoinOperator(String jdbcResourceName, String op) {
-    String product = getDatabaseProductNameLC(jdbcResourceName);
-    if( product.contains("microsoft sql server") )
-      return applyJoinMapping.get(op);
-    return lateralJoinMapping.get(op);
+    return getDialect(jdbcResourceName).joinMapping.get(op);
   }
 
   /**
@@ -352,12 +327,7 @@ public class DatabaseCompatibility
    */
   public Map<String, String[]> getSpatialFktMapping(String jdbcResourceName)
   {
-    String product = getDatabaseProductNameLC(jdbcResourceName);
-    if( product.contains("oracle") )
-      return oracleSpatialFktMapping;
-    else if( product.contains("microsoft sql server") )
-      return sqlServerSpatialFktMapping;
-    return spatialFktMapping;
+    return getDialect(jdbcResourceName).getSpatialFktMapping();
   }
 
 
@@ -397,6 +367,76 @@ public class DatabaseCompatibility
     return null;
   }
 
+  /**
+   * Dialect of the database behind jdbcResourceName, derived from {@link #getDatabaseProductNameLC(String)}. It is resolved on first access, usually during startup by {@link #resolveDialects(Collection)},
+   * and then read without locking. If the database product cannot be determined, a generic dialect is returned and resolution is retried on next access
+   * @param jdbcResourceName null for the default data source
+   * @return
+   */
+  public Dialect getDialect(String jdbcResourceName)
+  {
+    String key = jdbcResourceName == null ? DEFAULT_DIALECT_KEY : jdbcResourceName;
+    Dialect dialect = dialects.get(key);
+    if( dialect != null )
+      return dialect;
+
+    String productNameLC = getDatabaseProductNameLC(jdbcResourceName);
+    dialect = createDialect(productNameLC);
+    if( productNameLC == null )
+      return dialect;
+    Dialect existing = dialects.putIfAbsent(key, dialect);
+    return existing != null ? existing : dialect;
+  }
+
+  /**
+   * Resolves the dialects of the given data sources upfront, so that no request needs to access database meta data
+   * @param jdbcResourceNames
+   */
+  public void resolveDialects(Collection<String> jdbcResourceNames)
+  {
+    for( String jdbcResourceName : jdbcResourceNames ) {
+      Dialect dialect = getDialect(jdbcResourceName);
+      log.debug("Database dialect for jdbcResourceName '"+jdbcResourceName+"' is '"+dialect.getProductNameLC()+"'");
+    }
+  }
+
+  /**
+   * Maps a database product to its settings, all lookups by product name happen here once per data source
+   * @param productNameLC lower case database product name, null if unknown
+   * @return
+   */
+  protected Dialect createDialect(String productNameLC)
+  {
+    String product = productNameLC == null ? "" : productNameLC;
+    boolean isOracle = product.contains("oracle");
+    boolean isMySql = product.contains("mysql");
+    boolean isSqlServer = product.contains("microsoft sql server");
+    boolean isPostgres = product.contains("postgresql");
+    boolean isSnowflake = product.contains("snowflake");
+    boolean isRedshift = product.contains("redshift");
+
+    Set<String> reservedDBWords = isOracle ? sqlKeyWordsOracle : isMySql ? sqlKeyWordsMysql : isSqlServer ? sqlKeyWordsSqlServer
+        : isPostgres ? sqlKeyWordsPostgres : isSnowflake ? sqlKeyWordsSnowflake : sqlKeyWordsGeneric;
+    Map<String, String[]> calcFktMapping = isSqlServer ? sqlServerCalcFktMapping : isMySql ? mysqlCalcFktMapping
+        : isRedshift ? redshiftCalcFktMapping : isSnowflake ? snowflakeCalcFktMapping : oracleCalcFktMapping;
+    Map<String, String> aggrFktMapping = isMySql ? aggregationMappingMySql : aggregationMappingGeneric;
+    Map<String, String[]> spatialMapping = isOracle ? oracleSpatialFktMapping : isSqlServer ? sqlServerSpatialFktMapping : spatialFktMapping;
+    Map<String, String> joinMapping = isSqlServer ? applyJoinMapping : lateralJoinMapping;
+
+    Pagination pagination = isMySql || isRedshift ? Pagination.LIMIT_OFFSET : product.contains("teradata") ? Pagination.QUALIFY
+        : isSqlServer ? Pagination.OFFSET_REQUIRED : Pagination.ANSI;
+    String likeEscapeBackslash = isRedshift ? "" : isSnowflake ? " ESCAPE '\\\\'" : " ESCAPE '\\'";
+
+    return new Dialect(productNameLC, reservedDBWords, calcFktMapping, aggrFktMapping, spatialMapping, joinMapping, pagination, likeEscapeBackslash,
+        isOracle || isRedshift || product.contains("h2"),
+        !(isOracle || isSqlServer),
+        isOracle || isSqlServer || isPostgres || isSnowflake || product.contains("duckdb") || isRedshift,
+        isSnowflake,
+        isOracle || isRedshift || isSnowflake || isPostgres,
+        "postgresql".equals(productNameLC) || "snowflake".equals(productNameLC),
+        "postgresql".equals(productNameLC));
+  }
+
   /**
    * returns the clob column data as a string
    * @param bindingSetName the name of the currently used binding set
@@ -435,8 +475,7 @@ public class DatabaseCompatibility
     Clob clob = null;
     Reader cContentReader = null;
     // postgresql and snowflake would fail when using getClob, so we use getString instead to access the TEXT column
-    if ("postgresql".equals(getDatabaseProductNameLC(bs.getJdbcResourceName()))
-        ||"snowflake".equals(getDatabaseProductNameLC(bs.getJdbcResourceName()))) {
+    if (getDialect(bs.getJdbcResourceName()).readClobAsString) {
       content = rs.getString(column);
       if (content != null)
         iStr = new ByteArrayInputStream(content.getBytes("UTF-8"));
@@ -466,7 +505,7 @@ public class DatabaseCompatibility
     BindingSet bs  = Bindings.getInstance().get(bindingSetName, new ArrayList<String>());
     InputStream iStr = null;
     // postgresql would fail when using getBlob, so we use getBytes instead to access the binary column
-    if ("postgresql".equals(getDatabaseProductNameLC(bs.getJdbcResourceName()))) {
+    if (getDialect(bs.getJdbcResourceName()).readBlobAsBytes) {
       iStr = new ByteArrayInputStream(rs.getBytes(column));
     }
     else {
@@ -829,5 +868,65 @@ public class DatabaseCompatibility
       )
     );
   }
-}
 
+  /**
+   * How a database limits the rows of a result, see {@link DatabaseCompatibility#paginationClause(String, int, int, Supplier)}
+   */
+  protected enum Pagination { ANSI, LIMIT_OFFSET, QUALIFY, OFFSET_REQUIRED }
+
+  /**
+   * Immutable settings of the database behind one jdbcResourceName, created by {@link DatabaseCompatibility#createDialect(String)}
+   * The mappings are shared with DatabaseCompatibility and must not be modified
+   */
+  public static class Dialect
+  {
+    private final String productNameLC;
+    private final Set<String> reservedDBWords;
+    private final Map<String, String[]> calcFktMapping;
+    private final Map<String, String> aggrFktMapping;
+    private final Map<String, String[]> spatialFktMapping;
+    protected final Map<String, String> joinMapping;
+    protected final Pagination pagination;
+    protected final String likeEscapeBackslash;
+    protected final boolean needsColumnListForRecursiveWithClause;
+    protected final boolean needsRecursiveInWithClause;
+    protected final boolean supportsGroupingSets;
+    protected final boolean needsVarcharCastForConcatInTopN;
+    protected final boolean supportsNullsLast;
+    protected final boolean readClobAsString;
+    protected final boolean readBlobAsBytes;
+
+    protected Dialect(String productNameLC, Set<String> reservedDBWords, Map<String, String[]> calcFktMapping, Map<String, String> aggrFktMapping,
+        Map<String, String[]> spatialFktMapping, Map<String, String> joinMapping, Pagination pagination, String likeEscapeBackslash,
+        boolean needsColumnListForRecursiveWithClause, boolean needsRecursiveInWithClause, boolean supportsGroupingSets,
+        boolean needsVarcharCastForConcatInTopN, boolean supportsNullsLast, boolean readClobAsString, boolean readBlobAsBytes)
+    {
+      this.productNameLC = productNameLC;
+      this.reservedDBWords = reservedDBWords;
+      this.calcFktMapping = calcFktMapping;
+      this.aggrFktMapping = aggrFktMapping;
+      this.spatialFktMapping = spatialFktMapping;
+      this.joinMapping = joinMapping;
+      this.pagination = pagination;
+      this.likeEscapeBackslash = likeEscapeBackslash;
+      this.needsColumnListForRecursiveWithClause = needsColumnListForRecursiveWithClause;
+      this.needsRecursiveInWithClause = needsRecursiveInWithClause;
+      this.supportsGroupingSets = supportsGroupingSets;
+      this.needsVarcharCastForConcatInTopN = needsVarcharCastForConcatInTopN;
+      this.supportsNullsLast = supportsNullsLast;
+      this.readClobAsString = readClobAsString;
+      this.readBlobAsBytes = readBlobAsBytes;
+    }
+
+    /**
+     * @return lower case database product name, null if it could not be determined
+     */
+    public String getProductNameLC() { return productNameLC; }
+    public Set<String> getReservedDBWords() { return reservedDBWords; }
+    public Map<String, String[]> getCalcFktMapping() { return calcFktMapping; }
+    public Map<String, String> getAggrFktMapping() { return aggrFktMapping; }
+    public Map<String, String[]> getSpatialFktMapping() { return spatialFktMapping; }
+
+    protected String productNameForMatching() { return productNameLC == null ? "" : productNameLC; }
+  }
+}
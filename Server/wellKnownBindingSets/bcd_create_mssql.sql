@@ -58,7 +58,16 @@ CREATE TABLE bcd_log_access
    RS_START_TIME    BIGINT,
    RS_END_TIME      BIGINT,
    WRITE_DURATION   INTEGER,
-   EXECUTE_DURATION INTEGER
+   EXECUTE_DURATION INTEGER,
+   REQUEST_XML_HASH VARCHAR(64)
+);
+
+DROP TABLE bcd_log_access_xml CASCADE CONSTRAINTS;
+CREATE TABLE bcd_log_access_xml
+(
+   REQUEST_XML_HASH VARCHAR(64) NOT NULL PRIMARY KEY,
+   LOG_TIME         DATETIME DEFAULT CURRENT_TIMESTAMP,
+   REQUEST_XML      NVARCHAR(MAX)
 );
 
 DROP TABLE bcd_log_error CASCADE CONSTRAINTS;
@@ -57,7 +57,16 @@ CREATE TABLE bcd_log_access
    RS_START_TIME    NUMBER(22),
    RS_END_TIME      NUMBER(22),
    WRITE_DURATION   NUMBER(22),
-   EXECUTE_DURATION NUMBER(22)
+   EXECUTE_DURATION NUMBER(22),
+   REQUEST_XML_HASH VARCHAR2(64)
+);
+
+DROP TABLE bcd_log_access_xml CASCADE CONSTRAINTS;
+CREATE TABLE bcd_log_access_xml
+(
+   REQUEST_XML_HASH VARCHAR2(64) NOT NULL PRIMARY KEY,
+   LOG_TIME         TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+   REQUEST_XML      CLOB
 );
 
 DROP TABLE bcd_log_error CASCADE CONSTRAINTS;
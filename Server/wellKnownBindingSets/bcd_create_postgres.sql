@@ -57,7 +57,16 @@ CREATE TABLE bcd_log_access
    RS_START_TIME    BIGINT,
    RS_END_TIME      BIGINT,
    WRITE_DURATION   INTEGER,
-   EXECUTE_DURATION INTEGER
+   EXECUTE_DURATION INTEGER,
+   REQUEST_XML_HASH VARCHAR(64)
+);
+
+DROP TABLE IF EXISTS bcd_log_access_xml;
+CREATE TABLE bcd_log_access_xml
+(
+   REQUEST_XML_HASH VARCHAR(64) NOT NULL PRIMARY KEY,
+   LOG_TIME         TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+   REQUEST_XML      TEXT
 );
 
 DROP TABLE IF EXISTS bcd_log_error;
@@ -57,9 +57,19 @@ CREATE MULTISET TABLE bcd_log_access
    RS_START_TIME    DECIMAL(22,0),
    RS_END_TIME      DECIMAL(22,0),
    WRITE_DURATION   INTEGER,
-   EXECUTE_DURATION INTEGER
+   EXECUTE_DURATION INTEGER,
+   REQUEST_XML_HASH VARCHAR(64)
 );
 
+DROP TABLE bcd_log_access_xml;
+CREATE MULTISET TABLE bcd_log_access_xml
+(
+   REQUEST_XML_HASH VARCHAR(64) NOT NULL,
+   LOG_TIME         TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+   REQUEST_XML      CLOB
+)
+UNIQUE PRIMARY INDEX ( REQUEST_XML_HASH );
+
 DROP TABLE bcd_log_error;
 CREATE MULTISET TABLE bcd_log_error
 (